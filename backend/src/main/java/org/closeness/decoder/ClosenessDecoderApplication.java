@@ -2,8 +2,10 @@ package org.closeness.decoder;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class ClosenessDecoderApplication {
 
 	public static void main(String[] args) {
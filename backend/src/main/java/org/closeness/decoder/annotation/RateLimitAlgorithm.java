@@ -0,0 +1,14 @@
+package org.closeness.decoder.annotation;
+
+public enum RateLimitAlgorithm {
+    /**
+     * Generic cell rate algorithm: requests are spaced window / requests apart,
+     * with a burst of up to the full limit. One small key per client.
+     */
+    GCRA,
+    /**
+     * Exact count of requests in the trailing window. One sorted set entry per
+     * accepted request, so memory grows with the limit.
+     */
+    SLIDING_WINDOW
+}
@@ -11,4 +11,5 @@ public @interface RateLimiter {
     int requests() default 100;
     int window() default 60;
     String key();
+    RateLimitAlgorithm algorithm() default RateLimitAlgorithm.GCRA;
 }
@@ -1,11 +1,13 @@
 package org.closeness.decoder.aspect;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.closeness.decoder.annotation.RateLimiter;
+import org.closeness.decoder.dto.RateLimitDecision;
 import org.closeness.decoder.exception.RateLimitExceededException;
 import org.closeness.decoder.service.RateLimiterService;
 import org.springframework.stereotype.Component;
@@ -21,21 +23,36 @@ public class RateLimitAspect {
 
     @Around("@annotation(rateLimit)")
     public Object checkRateLimit(ProceedingJoinPoint joinPoint, RateLimiter rateLimit) throws Throwable {
-        
-        String clientKey = getClientKey(rateLimit.key());
-        
-        if (!rateLimiterService.isAllowed(clientKey, rateLimit.requests(), rateLimit.window())) {
-            long retryAfter = rateLimiterService.getTimeToReset(clientKey);
-            throw new RateLimitExceededException(retryAfter);
+        ServletRequestAttributes attributes =
+                (ServletRequestAttributes) RequestContextHolder.currentRequestAttributes();
+        String clientKey = getClientKey(attributes.getRequest(), rateLimit.key());
+
+        RateLimitDecision decision = rateLimiterService.acquire(
+                clientKey, rateLimit.algorithm(), rateLimit.requests(), rateLimit.window());
+        writeHeaders(attributes.getResponse(), decision);
+
+        if (!decision.allowed()) {
+            throw new RateLimitExceededException(toSeconds(decision.retryAfterMs()));
         }
         
         return joinPoint.proceed();
     }
+
+    // RateLimit-* fields from the IETF rate limit headers draft, in seconds
+    private void writeHeaders(HttpServletResponse response, RateLimitDecision decision) {
+        if (response == null) {
+            return;
+        }
+        response.setHeader("RateLimit-Limit", String.valueOf(decision.limit()));
+        response.setHeader("RateLimit-Remaining", String.valueOf(decision.remaining()));
+        response.setHeader("RateLimit-Reset", String.valueOf(toSeconds(decision.resetMs())));
+    }
+
+    private long toSeconds(long millis) {
+        return Math.max(0, -Math.floorDiv(-millis, 1000));
+    }
     
-    private String getClientKey(String customKey) {
-        HttpServletRequest request = ((ServletRequestAttributes) 
-            RequestContextHolder.currentRequestAttributes()).getRequest();
-        
+    private String getClientKey(HttpServletRequest request, String customKey) {
         String ip = request.getRemoteAddr();
         String path = request.getRequestURI();
         
@@ -45,4 +62,4 @@ public class RateLimitAspect {
         
         return path + ":" + ip;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,58 @@
+package org.closeness.decoder.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class ExecutorConfig {
+
+    public static final String CLICK_FLUSH_EXECUTOR = "clickFlushExecutor";
+    public static final String EXPIRY_EXECUTOR = "expiryExecutor";
+    public static final String UPLOAD_REQUEST_EXECUTOR = "uploadRequestExecutor";
+    public static final String FILE_UPLOAD_EXECUTOR = "fileUploadExecutor";
+
+    // single worker so flushes from all stream tasks are applied in order
+    @Bean(name = CLICK_FLUSH_EXECUTOR)
+    public ThreadPoolTaskExecutor clickFlushExecutor(
+            @Value("${app.streams.click-flush.queue-capacity:16}") int queueCapacity) {
+        return boundedExecutor("click-flush-", 1, queueCapacity);
+    }
+
+    @Bean(name = EXPIRY_EXECUTOR)
+    public ThreadPoolTaskExecutor expiryExecutor(
+            @Value("${app.streams.expiry.pool-size:2}") int poolSize,
+            @Value("${app.streams.expiry.queue-capacity:8}") int queueCapacity) {
+        return boundedExecutor("expiry-", poolSize, queueCapacity);
+    }
+
+    // upload requests run here instead of on servlet threads; a full queue is
+    // turned into 503 by UploadPipeline
+    @Bean(name = UPLOAD_REQUEST_EXECUTOR)
+    public ThreadPoolTaskExecutor uploadRequestExecutor(
+            @Value("${app.upload.request-pool-size:8}") int poolSize,
+            @Value("${app.upload.request-queue-capacity:32}") int queueCapacity) {
+        return boundedExecutor("upload-request-", poolSize, queueCapacity);
+    }
+
+    // whole files of a multi-file upload; kept apart from the request executor
+    // because each request task blocks on its own files
+    @Bean(name = FILE_UPLOAD_EXECUTOR)
+    public ThreadPoolTaskExecutor fileUploadExecutor(
+            @Value("${app.upload.max-concurrent-files:4}") int maxConcurrentFiles,
+            @Value("${app.upload.file-queue-capacity:64}") int queueCapacity) {
+        return boundedExecutor("file-upload-", maxConcurrentFiles, queueCapacity);
+    }
+
+    private ThreadPoolTaskExecutor boundedExecutor(String threadNamePrefix, int poolSize, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
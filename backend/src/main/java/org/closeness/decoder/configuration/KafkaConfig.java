@@ -6,6 +6,8 @@ import org.apache.kafka.common.config.SaslConfigs;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.errors.LogAndContinueExceptionHandler;
+import org.closeness.decoder.service.serde.FriendEventSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -31,6 +33,11 @@ public class KafkaConfig {
     @Value("${KAFKA_API_SECRET}")
     private String apiSecret;
 
+    // "binary" or "json"; consumers read both, but producers stay on json until every
+    // deployed consumer runs the binary serde, then this flips to binary
+    @Value("${app.kafka.event-format:json}")
+    private String eventFormat;
+
     private Map<String, Object> commonConfigs() {
         Map<String, Object> configs = new HashMap<>();
         configs.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
@@ -47,7 +54,18 @@ public class KafkaConfig {
     public ProducerFactory<String, Object> producerFactory() {
         Map<String, Object> configs = commonConfigs();
         configs.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configs.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JacksonJsonSerializer.class);
+        configs.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG,
+                "json".equalsIgnoreCase(eventFormat)
+                        ? JacksonJsonSerializer.class
+                        : FriendEventSerializer.class);
+        // idempotent so retried sends from the outbox relay are not duplicated by the broker;
+        // a short linger lets relayed batches fill producer batches
+        configs.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        configs.put(ProducerConfig.ACKS_CONFIG, "all");
+        configs.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+        configs.put(ProducerConfig.LINGER_MS_CONFIG, 20);
+        configs.put(ProducerConfig.BATCH_SIZE_CONFIG, 64 * 1024);
+        configs.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
         return new DefaultKafkaProducerFactory<>(configs);
     }
 
@@ -62,6 +80,9 @@ public class KafkaConfig {
         configs.put(StreamsConfig.APPLICATION_ID_CONFIG, "closeness-decoder-streams");
         configs.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.StringSerde.class);
         configs.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.StringSerde.class);
+        // event serdes decode inside the consumer; skip unreadable records instead of stopping the thread
+        configs.put(StreamsConfig.DESERIALIZATION_EXCEPTION_HANDLER_CLASS_CONFIG,
+                LogAndContinueExceptionHandler.class);
         return new KafkaStreamsConfiguration(configs);
     }
 }
@@ -0,0 +1,28 @@
+package org.closeness.decoder.configuration;
+
+import org.closeness.decoder.security.TokenRevocationListener;
+import org.closeness.decoder.service.RedisCacheService;
+import org.closeness.decoder.service.cache.FriendUrlDeactivationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+public class RedisConfig {
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(
+            RedisConnectionFactory connectionFactory,
+            FriendUrlDeactivationListener friendUrlDeactivationListener,
+            TokenRevocationListener tokenRevocationListener) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(friendUrlDeactivationListener,
+                new ChannelTopic(RedisCacheService.FRIEND_URL_DEACTIVATED_CHANNEL));
+        container.addMessageListener(tokenRevocationListener,
+                new ChannelTopic(RedisCacheService.TOKEN_REVOKED_CHANNEL));
+        return container;
+    }
+}
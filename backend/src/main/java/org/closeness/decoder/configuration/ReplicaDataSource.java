@@ -0,0 +1,124 @@
+package org.closeness.decoder.configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out connections to read replicas, round robin over those that are
+ * reachable, streaming WAL from their upstream, and whose replay lag is
+ * within maxLag. When no replica qualifies, or the chosen one fails to
+ * connect, the connection comes from the primary, so a lagging, disconnected
+ * or lost replica degrades to primary reads rather than stale or failed ones.
+ * <p>
+ * A replica only joins the rotation once a lag check has passed, and leaves
+ * it on its first failed connection until the next check passes, so an
+ * outage costs at most one short connection timeout per replica rather
+ * than one per read.
+ */
+@Slf4j
+public class ReplicaDataSource extends AbstractDataSource implements AutoCloseable {
+
+    // -1 when the replica is not streaming WAL, since a replica that lost its
+    // upstream has replayed everything it received and would otherwise read as
+    // current; zero when it has replayed everything it has received, so an idle
+    // primary does not read as lag; zero on a server that is not in recovery.
+    // Reading the receiver's status needs pg_read_all_stats (or superuser)
+    private static final String LAG_SQL =
+            "SELECT CASE WHEN NOT pg_is_in_recovery() THEN 0 " +
+            "WHEN NOT EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') THEN -1 " +
+            "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END";
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final long maxLagMs;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaDataSource(DataSource primary, List<HikariDataSource> replicas, Duration maxLag) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.maxLagMs = maxLag.toMillis();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        List<Replica> healthy = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            if (replica.healthy) {
+                healthy.add(replica);
+            }
+        }
+        if (!healthy.isEmpty()) {
+            Replica replica = healthy.get(Math.floorMod(next.getAndIncrement(), healthy.size()));
+            try {
+                return replica.dataSource.getConnection();
+            } catch (SQLException e) {
+                replica.healthy = false;
+                log.warn("Replica {} unavailable, reading from primary: {}", replica.name(), e.getMessage());
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection();
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replica.check-interval-ms:5000}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            boolean healthy;
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(LAG_SQL)) {
+                resultSet.next();
+                long lagMs = resultSet.getLong(1);
+                healthy = lagMs >= 0 && lagMs <= maxLagMs;
+                if (lagMs < 0) {
+                    log.warn("Replica {} is not streaming WAL, reading from primary", replica.name());
+                } else if (!healthy) {
+                    log.warn("Replica {} is {} ms behind, reading from primary", replica.name(), lagMs);
+                }
+            } catch (SQLException e) {
+                healthy = false;
+                log.warn("Replica {} lag check failed: {}", replica.name(), e.getMessage());
+            }
+            if (healthy && !replica.healthy) {
+                log.info("Replica {} is back in rotation", replica.name());
+            }
+            replica.healthy = healthy;
+        }
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(replica -> replica.dataSource.close());
+    }
+
+    private static final class Replica {
+
+        private final HikariDataSource dataSource;
+        private volatile boolean healthy;
+
+        Replica(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        String name() {
+            return dataSource.getPoolName();
+        }
+    }
+}
@@ -8,6 +8,7 @@ import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.S3Configuration;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
@@ -45,6 +46,25 @@ public class S3Config {
                 build();
     }
 
+    // non-blocking client for upload traffic; parts in flight hold no threads
+    @Bean
+    public S3AsyncClient s3AsyncClient() {
+        AwsBasicCredentials credentials =
+                AwsBasicCredentials.create(props.getAccessKey(), props.getSecretKey());
+        AwsCredentialsProvider credentialsProvider =
+                StaticCredentialsProvider.create(credentials);
+
+        return S3AsyncClient.builder().
+                endpointOverride(URI.create(props.getEndpoint())).
+                region(Region.of(props.getRegion())).
+                credentialsProvider(credentialsProvider).
+                serviceConfiguration(S3Configuration.
+                        builder().
+                        pathStyleAccessEnabled(false). // using virtual hosted style
+                                build()).
+                build();
+    }
+
     @Bean
     public S3Presigner s3Presigner() {
         AwsBasicCredentials credentials =
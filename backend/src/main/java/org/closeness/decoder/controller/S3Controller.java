@@ -1,24 +1,35 @@
 package org.closeness.decoder.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.Getter;
 import org.closeness.decoder.annotation.RateLimiter;
+import org.closeness.decoder.dto.FinalizeUploadRequest;
 import org.closeness.decoder.dto.FriendMessageDto;
+import org.closeness.decoder.dto.UploadUrlRequest;
 import org.closeness.decoder.service.S3Service;
+import org.closeness.decoder.service.upload.UploadPipeline;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api")
 public class S3Controller {
 
     private final S3Service s3Service;
+    private final UploadPipeline uploadPipeline;
 
-    public S3Controller(S3Service s3Service) {
+    public S3Controller(S3Service s3Service, UploadPipeline uploadPipeline) {
         this.s3Service = s3Service;
+        this.uploadPipeline = uploadPipeline;
     }
 
     @GetMapping(path = "/presigned-url/{key}")
@@ -28,23 +39,52 @@ public class S3Controller {
         return s3Service.getPreSignedUrl(key);
     }
 
-    // TODO -> allow multiple files to be added in a single api call(List<MultiPartFile> files)
+    // uploads run on UploadPipeline so servlet threads stay free for reads
     @PostMapping(path = "/upload")
-    public ResponseEntity<?> sendObjectToS3CompatibleStorage(
+    public CompletableFuture<ResponseEntity<?>> sendObjectToS3CompatibleStorage(
             @RequestParam("file") MultipartFile file) {
         if (file.isEmpty()) {
-            return new ResponseEntity<>("file is not present", HttpStatus.BAD_REQUEST);
+            return CompletableFuture.completedFuture(
+                    new ResponseEntity<>("file is not present", HttpStatus.BAD_REQUEST));
         } else if (!file.getContentType().equalsIgnoreCase("application/pdf")) {
-            return new ResponseEntity<>("only pdf file format is supported", HttpStatus.BAD_REQUEST);
+            return CompletableFuture.completedFuture(
+                    new ResponseEntity<>("only pdf file format is supported", HttpStatus.BAD_REQUEST));
         }
-        return s3Service.sendObject(file);
+        return uploadPipeline.submit(() -> s3Service.sendObject(file));
     }
 
+    // a single file keeps the plain FriendLinkDto response, several files get one result per file
     @PostMapping(path = "/friend-url/upload")
-    public ResponseEntity<?> sendObjectToS3CompatibleStorageAndGeneratePresignedUrl(
-            @RequestParam("file") MultipartFile file
+    public CompletableFuture<ResponseEntity<?>> sendObjectToS3CompatibleStorageAndGeneratePresignedUrl(
+            @RequestParam("file") List<MultipartFile> files
     ) {
-        return s3Service.sendObjectAndGeneratePresignedUrl(file);
+        if (files.size() == 1) {
+            return uploadPipeline.submit(() -> s3Service.sendObjectAndGeneratePresignedUrl(files.get(0)));
+        }
+        return uploadPipeline.submit(() -> s3Service.sendObjectsAndGeneratePresignedUrls(files));
+    }
+
+    // raw PDF body, streamed to storage as it arrives instead of being buffered as a multipart part
+    @PostMapping(path = "/friend-url/upload/stream", consumes = MediaType.APPLICATION_PDF_VALUE)
+    public CompletableFuture<ResponseEntity<?>> streamObjectToS3CompatibleStorageAndGeneratePresignedUrl(
+            HttpServletRequest request,
+            @RequestHeader(value = "X-File-Name", required = false) String fileName
+    ) throws IOException {
+        InputStream body = request.getInputStream();
+        String contentType = request.getContentType();
+        return uploadPipeline.submit(() ->
+                s3Service.streamObjectAndGeneratePresignedUrl(body, fileName, contentType));
+    }
+
+    // direct upload: sign a PUT for the client, then create the link once the object is in storage
+    @PostMapping(path = "/friend-url/upload-url")
+    public ResponseEntity<?> createUploadUrl(@RequestBody UploadUrlRequest request) {
+        return s3Service.createUploadUrl(request);
+    }
+
+    @PostMapping(path = "/friend-url/upload-url/finalize")
+    public ResponseEntity<?> finalizeUpload(@RequestBody FinalizeUploadRequest request) {
+        return s3Service.finalizeUpload(request);
     }
 
     @GetMapping(path = "/friend-url/{friendCode}")
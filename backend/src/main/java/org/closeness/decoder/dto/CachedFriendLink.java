@@ -0,0 +1,22 @@
+package org.closeness.decoder.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CachedFriendLink {
+    private String sourceKey;
+    // epoch millis
+    private long expiresAt;
+
+    public static CachedFriendLink dead() {
+        return new CachedFriendLink(null, 0);
+    }
+
+    public boolean isDead() {
+        return sourceKey == null;
+    }
+}
@@ -0,0 +1,27 @@
+package org.closeness.decoder.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * Outcome of one file in a multi-file upload; exactly one of friendCode and error is set.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FileUploadResultDto {
+    private String fileName;
+    private UUID friendCode;
+    private String error;
+
+    public static FileUploadResultDto success(String fileName, UUID friendCode) {
+        return new FileUploadResultDto(fileName, friendCode, null);
+    }
+
+    public static FileUploadResultDto failure(String fileName, String error) {
+        return new FileUploadResultDto(fileName, null, error);
+    }
+}
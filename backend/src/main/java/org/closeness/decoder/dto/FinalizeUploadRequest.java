@@ -0,0 +1,12 @@
+package org.closeness.decoder.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FinalizeUploadRequest {
+    private String key;
+}
@@ -1,13 +1,25 @@
 package org.closeness.decoder.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+/**
+ * Clicks on a friend link aggregated over [windowStart, windowEnd).
+ * Records published before aggregation carry no count and stand for one click.
+ */
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class FriendClickEvent {
     private String friendCode;
-    private long clickedAt;
+    private long count;
+    private long windowStart;
+    private long windowEnd;
+
+    public long clicks() {
+        return count > 0 ? count : 1;
+    }
 }
@@ -0,0 +1,9 @@
+package org.closeness.decoder.dto;
+
+/**
+ * Outcome of one rate limit check. Times are in milliseconds from now:
+ * resetMs until the client's quota is fully available again, retryAfterMs
+ * until the next request would be accepted (0 when this one was).
+ */
+public record RateLimitDecision(boolean allowed, int limit, long remaining, long resetMs, long retryAfterMs) {
+}
@@ -0,0 +1,8 @@
+package org.closeness.decoder.dto;
+
+/**
+ * Block of requests granted by the shared limiter. Times are in milliseconds
+ * from when it was granted; retryAfterMs is only set when nothing was granted.
+ */
+public record RateLimitLease(long granted, long remaining, long resetMs, long retryAfterMs) {
+}
@@ -0,0 +1,14 @@
+package org.closeness.decoder.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadUrlRequest {
+    private String fileName;
+    private String contentType;
+    private long contentLength;
+}
@@ -0,0 +1,23 @@
+package org.closeness.decoder.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Presigned PUT for a direct upload. The client must send exactly the signed
+ * headers, then finalize the upload with the returned key.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadUrlResponse {
+    private String key;
+    private String uploadUrl;
+    private Map<String, List<String>> headers;
+    // epoch millis
+    private long expiresAt;
+}
@@ -23,6 +23,14 @@ public class GlobalExceptionHandler {
                 .body(Map.of("error", ex.getMessage()));
     }
 
+    @ExceptionHandler(UploadException.class)
+    public ResponseEntity<Map<String, String>> handleUploadException(UploadException ex) {
+        log.warn("Upload rejected: {}", ex.getMessage());
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", ex.getMessage()));
+    }
+
     @ExceptionHandler(MaxUploadSizeExceededException.class)
     public ResponseEntity<Map<String, String>> handleLimitExceededRequest() {
         return ResponseEntity
@@ -56,5 +64,16 @@ public class GlobalExceptionHandler {
                 .header("Retry-After", String.valueOf(ex.getRetryAfterSeconds()))
                 .body(body);
     }
-}
 
+    @ExceptionHandler(UploadCapacityExceededException.class)
+    public ResponseEntity<Map<String, Object>> handleUploadCapacityExceeded(UploadCapacityExceededException ex) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("error", "Service Unavailable");
+        body.put("message", ex.getMessage());
+        body.put("retryAfter", ex.getRetryAfterSeconds());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", String.valueOf(ex.getRetryAfterSeconds()))
+                .body(body);
+    }
+}
@@ -0,0 +1,15 @@
+package org.closeness.decoder.exception;
+
+public class UploadCapacityExceededException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public UploadCapacityExceededException(long retryAfterSeconds) {
+        super("Upload capacity exceeded. Try again in " + retryAfterSeconds + " seconds.");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,174 @@
+package org.closeness.decoder.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reference-counted stored objects keyed by the SHA-256 of their content.
+ * Every active friend url holds one reference to the blob behind its source
+ * key. A blob whose count reaches zero stays in the table until its object
+ * has been deleted, so a failed delete can be retried. Keys with no row are
+ * objects stored before deduplication and are owned by a single link.
+ * Objects no row points at any more are kept in orphaned_objects until they
+ * are purged.
+ */
+@Repository
+@RequiredArgsConstructor
+public class FileBlobRepository {
+
+    private static final String ACQUIRE_EXISTING_SQL =
+            "UPDATE closeness_decoder_schema.file_blobs " +
+            "SET ref_count = ref_count + 1 " +
+            "WHERE digest = ? AND ref_count > 0 " +
+            "RETURNING storage_key";
+
+    // a released blob that is waiting for its delete is taken over by the new object;
+    // reviving it instead could race a purge that is deleting it. The key it held
+    // is recorded as orphaned in the same statement so its object is still purged
+    private static final String REGISTER_SQL =
+            "WITH displaced AS (" +
+            "SELECT storage_key FROM closeness_decoder_schema.file_blobs " +
+            "WHERE digest = ? AND ref_count <= 0 FOR UPDATE), " +
+            "recorded AS (" +
+            "INSERT INTO closeness_decoder_schema.orphaned_objects (storage_key) " +
+            "SELECT storage_key FROM displaced ON CONFLICT DO NOTHING) " +
+            "INSERT INTO closeness_decoder_schema.file_blobs (digest, storage_key, size_bytes, ref_count) " +
+            "VALUES (?, ?, ?, 1) " +
+            "ON CONFLICT (digest) DO UPDATE SET " +
+            "storage_key = CASE WHEN file_blobs.ref_count > 0 " +
+            "THEN file_blobs.storage_key ELSE EXCLUDED.storage_key END, " +
+            "ref_count = GREATEST(file_blobs.ref_count, 0) + 1 " +
+            "RETURNING storage_key";
+
+    private static final String RELEASE_SQL =
+            "UPDATE closeness_decoder_schema.file_blobs b " +
+            "SET ref_count = b.ref_count - r.refs " +
+            "FROM (SELECT key, count(*) AS refs FROM unnest(?::text[]) AS key GROUP BY key) r " +
+            "WHERE b.storage_key = r.key";
+
+    private static final String RETAINED_KEYS_SQL =
+            "SELECT storage_key FROM closeness_decoder_schema.file_blobs " +
+            "WHERE storage_key = ANY(?::text[]) AND ref_count > 0";
+
+    private static final String FORGET_SQL =
+            "DELETE FROM closeness_decoder_schema.file_blobs " +
+            "WHERE storage_key = ANY(?::text[]) AND ref_count <= 0";
+
+    private static final String RELEASED_KEYS_SQL =
+            "(SELECT storage_key FROM closeness_decoder_schema.file_blobs WHERE ref_count <= 0) " +
+            "UNION (SELECT storage_key FROM closeness_decoder_schema.orphaned_objects " +
+            "WHERE purge_after <= now()) " +
+            "LIMIT ?";
+
+    private static final String RECORD_ORPHAN_SQL =
+            "INSERT INTO closeness_decoder_schema.orphaned_objects (storage_key) VALUES (?) " +
+            "ON CONFLICT DO NOTHING";
+
+    private static final String RECORD_PENDING_UPLOAD_SQL =
+            "INSERT INTO closeness_decoder_schema.orphaned_objects (storage_key, purge_after) " +
+            "VALUES (?, now() + ? * interval '1 millisecond') " +
+            "ON CONFLICT (storage_key) DO UPDATE SET purge_after = EXCLUDED.purge_after";
+
+    private static final String CLEAR_PENDING_UPLOAD_SQL =
+            "DELETE FROM closeness_decoder_schema.orphaned_objects WHERE storage_key = ?";
+
+    private static final String FORGET_ORPHANS_SQL =
+            "DELETE FROM closeness_decoder_schema.orphaned_objects WHERE storage_key = ANY(?::text[])";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Takes a reference to a live blob with this digest.
+     *
+     * @return its storage key, or null if no live blob has this content
+     */
+    public String acquireExisting(String digest) {
+        List<String> keys = jdbcTemplate.queryForList(ACQUIRE_EXISTING_SQL, String.class, digest);
+        return keys.isEmpty() ? null : keys.get(0);
+    }
+
+    /**
+     * Records a freshly stored object and takes a reference to it.
+     *
+     * @return the key to link to, which differs from storageKey if the same
+     * content was registered concurrently under another key
+     */
+    public String register(String digest, String storageKey, long size) {
+        return jdbcTemplate.queryForObject(REGISTER_SQL, String.class, digest, digest, storageKey, size);
+    }
+
+    /**
+     * Records an object no blob points at, so it is purged later.
+     */
+    public void recordOrphan(String storageKey) {
+        jdbcTemplate.update(RECORD_ORPHAN_SQL, storageKey);
+    }
+
+    /**
+     * Records a key a client was allowed to upload to, so its object is
+     * purged once purgeAfter has passed unless the upload is finalized first.
+     */
+    public void recordPendingUpload(String storageKey, Duration purgeAfter) {
+        jdbcTemplate.update(RECORD_PENDING_UPLOAD_SQL, storageKey, purgeAfter.toMillis());
+    }
+
+    /**
+     * Keeps a finalized upload's object from being purged.
+     */
+    public void clearPendingUpload(String storageKey) {
+        jdbcTemplate.update(CLEAR_PENDING_UPLOAD_SQL, storageKey);
+    }
+
+    /**
+     * Drops one reference per occurrence of each key.
+     */
+    public void release(Collection<String> storageKeys) {
+        if (storageKeys.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(RELEASE_SQL, ps ->
+                ps.setArray(1, ps.getConnection().createArrayOf("text", storageKeys.toArray())));
+    }
+
+    /**
+     * Returns the keys whose objects can be deleted: released blobs and keys
+     * stored before deduplication.
+     */
+    public Set<String> deletableKeys(Collection<String> storageKeys) {
+        Set<String> deletable = new HashSet<>(storageKeys);
+        if (!deletable.isEmpty()) {
+            deletable.removeAll(jdbcTemplate.query(RETAINED_KEYS_SQL,
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", storageKeys.toArray())),
+                    (rs, rowNum) -> rs.getString(1)));
+        }
+        return deletable;
+    }
+
+    /**
+     * Returns up to limit keys of released blobs and orphaned objects still
+     * waiting for their object to be deleted.
+     */
+    public List<String> releasedKeys(int limit) {
+        return jdbcTemplate.queryForList(RELEASED_KEYS_SQL, String.class, limit);
+    }
+
+    /**
+     * Removes released blobs and orphaned objects whose objects have been deleted.
+     */
+    public void forget(Collection<String> deletedKeys) {
+        if (deletedKeys.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(FORGET_SQL, ps ->
+                ps.setArray(1, ps.getConnection().createArrayOf("text", deletedKeys.toArray())));
+        jdbcTemplate.update(FORGET_ORPHANS_SQL, ps ->
+                ps.setArray(1, ps.getConnection().createArrayOf("text", deletedKeys.toArray())));
+    }
+}
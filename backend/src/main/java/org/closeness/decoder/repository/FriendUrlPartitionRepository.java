@@ -0,0 +1,182 @@
+package org.closeness.decoder.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Daily range partitions of friend_urls on created_at, named
+ * friend_urls_pYYYYMMDD, after the legacy partition holding every link
+ * created before partitioning. Partition names are built from dates only and
+ * checked against NAME before being spliced into DDL.
+ */
+@Repository
+@RequiredArgsConstructor
+public class FriendUrlPartitionRepository {
+
+    private static final String SCHEMA = "closeness_decoder_schema";
+    private static final String PREFIX = "friend_urls_p";
+    private static final Pattern NAME = Pattern.compile("friend_urls_p\\d{8}");
+    private static final DateTimeFormatter DAY = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final String LEGACY = "friend_urls_legacy";
+    // the upper bound in "FOR VALUES FROM (MINVALUE) TO ('2026-10-18 00:00:00')"
+    private static final Pattern UPPER_BOUND = Pattern.compile("TO \\('(\\d{4}-\\d{2}-\\d{2})");
+
+    private static final String LIST_SQL =
+            "SELECT c.relname FROM pg_inherits i " +
+            "JOIN pg_class c ON c.oid = i.inhrelid " +
+            "JOIN pg_class p ON p.oid = i.inhparent " +
+            "JOIN pg_namespace n ON n.oid = p.relnamespace " +
+            "WHERE n.nspname = '" + SCHEMA + "' AND p.relname = 'friend_urls' " +
+            "AND i.inhdetachpending = ?";
+
+    private static final String LEGACY_BOUND_SQL =
+            "SELECT pg_get_expr(c.relpartbound, c.oid) FROM pg_inherits i " +
+            "JOIN pg_class c ON c.oid = i.inhrelid " +
+            "JOIN pg_class p ON p.oid = i.inhparent " +
+            "JOIN pg_namespace n ON n.oid = p.relnamespace " +
+            "WHERE n.nspname = '" + SCHEMA + "' AND p.relname = 'friend_urls' " +
+            "AND c.relname = '" + LEGACY + "' AND i.inhdetachpending = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Creates the partition holding links created on day, if it is missing.
+     */
+    public void createIfAbsent(LocalDate day) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + qualified(nameOf(day)) +
+                " PARTITION OF " + SCHEMA + ".friend_urls" +
+                " FOR VALUES FROM ('" + day + "') TO ('" + day.plusDays(1) + "')");
+    }
+
+    /**
+     * Returns the first day after the legacy partition, or empty once it is
+     * no longer part of friend_urls. Daily partitions start on that day.
+     */
+    public Optional<LocalDate> legacyEnd() {
+        List<String> bounds = jdbcTemplate.queryForList(LEGACY_BOUND_SQL, String.class, false);
+        if (bounds.isEmpty()) {
+            return Optional.empty();
+        }
+        Matcher matcher = UPPER_BOUND.matcher(bounds.get(0));
+        if (!matcher.find()) {
+            throw new IllegalStateException("Unexpected legacy partition bound: " + bounds.get(0));
+        }
+        return Optional.of(LocalDate.parse(matcher.group(1)));
+    }
+
+    /**
+     * Returns the days of the attached daily partitions. Partitions with
+     * other names, such as the pre-partitioning table, are left out.
+     */
+    public List<LocalDate> attachedDays() {
+        return days(false);
+    }
+
+    /**
+     * Returns the days of partitions whose concurrent detach was interrupted
+     * and has to be finalized.
+     */
+    public List<LocalDate> detachPendingDays() {
+        return days(true);
+    }
+
+    private List<LocalDate> days(boolean detachPending) {
+        List<LocalDate> days = new ArrayList<>();
+        for (String name : jdbcTemplate.queryForList(LIST_SQL, String.class, detachPending)) {
+            if (NAME.matcher(name).matches()) {
+                days.add(LocalDate.parse(name.substring(PREFIX.length()), DAY));
+            }
+        }
+        return days;
+    }
+
+    /**
+     * Whether the legacy partition's detach was interrupted and has to be
+     * finalized.
+     */
+    public boolean legacyDetachPending() {
+        return !jdbcTemplate.queryForList(LEGACY_BOUND_SQL, String.class, true).isEmpty();
+    }
+
+    public boolean hasActiveRows(LocalDate day) {
+        return hasActiveRows(nameOf(day));
+    }
+
+    public boolean legacyHasActiveRows() {
+        return hasActiveRows(LEGACY);
+    }
+
+    /**
+     * Detaches the day's partition without blocking reads and writes on
+     * friend_urls. The detached table is kept as an archive. Must not run
+     * inside a transaction.
+     */
+    public void detach(LocalDate day) {
+        detach(nameOf(day));
+    }
+
+    public void detachLegacy() {
+        detach(LEGACY);
+    }
+
+    /**
+     * Completes a concurrent detach that was interrupted part way.
+     */
+    public void finalizeDetach(LocalDate day) {
+        finalizeDetach(nameOf(day));
+    }
+
+    public void finalizeLegacyDetach() {
+        finalizeDetach(LEGACY);
+    }
+
+    public void drop(LocalDate day) {
+        drop(nameOf(day));
+    }
+
+    public void dropLegacy() {
+        drop(LEGACY);
+    }
+
+    // served by the partial index on expires_at WHERE is_active
+    private boolean hasActiveRows(String name) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + qualified(name) + " WHERE is_active)",
+                Boolean.class));
+    }
+
+    private void detach(String name) {
+        jdbcTemplate.execute("ALTER TABLE " + SCHEMA + ".friend_urls DETACH PARTITION " +
+                qualified(name) + " CONCURRENTLY");
+    }
+
+    private void finalizeDetach(String name) {
+        jdbcTemplate.execute("ALTER TABLE " + SCHEMA + ".friend_urls DETACH PARTITION " +
+                qualified(name) + " FINALIZE");
+    }
+
+    private void drop(String name) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + qualified(name));
+    }
+
+    private static String nameOf(LocalDate day) {
+        String name = PREFIX + DAY.format(day);
+        if (!NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Unexpected partition day: " + day);
+        }
+        return name;
+    }
+
+    private static String qualified(String name) {
+        return SCHEMA + "." + name;
+    }
+}
@@ -0,0 +1,31 @@
+package org.closeness.decoder.repository;
+
+import org.closeness.decoder.dto.ExpiryStateStore;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public interface FriendUrlRepositoryCustom {
+
+    /**
+     * Adds each delta to its row's click count in one set-based statement.
+     */
+    int incrementClickCounts(Map<UUID, Long> deltas);
+
+    /**
+     * Deactivates the active rows among ids.
+     *
+     * @return the source key of every row this call deactivated, so each
+     * link's blob reference is released exactly once even when retried
+     */
+    List<String> deactivate(Collection<UUID> ids);
+
+    /**
+     * Returns up to limit active links that expired at or before cutoff,
+     * oldest first.
+     */
+    List<ExpiryStateStore> findOverdue(LocalDateTime cutoff, int limit);
+}
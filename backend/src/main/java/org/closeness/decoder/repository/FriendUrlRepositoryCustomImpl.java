@@ -0,0 +1,75 @@
+package org.closeness.decoder.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.closeness.decoder.dto.ExpiryStateStore;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Array;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@RequiredArgsConstructor
+public class FriendUrlRepositoryCustomImpl implements FriendUrlRepositoryCustom {
+
+    private static final String INCREMENT_CLICK_COUNTS_SQL =
+            "UPDATE closeness_decoder_schema.friend_urls f " +
+            "SET click_count = COALESCE(f.click_count, 0) + d.clicks " +
+            "FROM unnest(?::uuid[], ?::bigint[]) AS d(id, clicks) " +
+            "WHERE f.friend_url_id = d.id";
+
+    private static final String DEACTIVATE_SQL =
+            "UPDATE closeness_decoder_schema.friend_urls " +
+            "SET is_active = false " +
+            "WHERE friend_url_id = ANY(?::uuid[]) AND is_active IS DISTINCT FROM false " +
+            "RETURNING source_key";
+
+    // served by the partial index on expires_at WHERE is_active
+    private static final String FIND_OVERDUE_SQL =
+            "SELECT friend_url_id, source_key FROM closeness_decoder_schema.friend_urls " +
+            "WHERE is_active AND expires_at <= ? " +
+            "ORDER BY expires_at LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int incrementClickCounts(Map<UUID, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        UUID[] ids = new UUID[deltas.size()];
+        Long[] clicks = new Long[deltas.size()];
+        int i = 0;
+        for (Map.Entry<UUID, Long> entry : deltas.entrySet()) {
+            ids[i] = entry.getKey();
+            clicks[i] = entry.getValue();
+            i++;
+        }
+        return jdbcTemplate.update(INCREMENT_CLICK_COUNTS_SQL, ps -> {
+            Array idArray = ps.getConnection().createArrayOf("uuid", ids);
+            Array clickArray = ps.getConnection().createArrayOf("bigint", clicks);
+            ps.setArray(1, idArray);
+            ps.setArray(2, clickArray);
+        });
+    }
+
+    @Override
+    public List<String> deactivate(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(DEACTIVATE_SQL,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids.toArray())),
+                (rs, rowNum) -> rs.getString(1));
+    }
+
+    @Override
+    public List<ExpiryStateStore> findOverdue(LocalDateTime cutoff, int limit) {
+        return jdbcTemplate.query(FIND_OVERDUE_SQL,
+                (rs, rowNum) -> new ExpiryStateStore(rs.getString(1), rs.getString(2)),
+                Timestamp.valueOf(cutoff), limit);
+    }
+}
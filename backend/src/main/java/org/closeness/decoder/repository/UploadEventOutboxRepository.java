@@ -0,0 +1,83 @@
+package org.closeness.decoder.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.closeness.decoder.dto.FriendUploadEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Upload events waiting to be relayed to Kafka. Rows are written in the
+ * transaction that creates their friend urls, so an event exists exactly when
+ * its link does.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UploadEventOutboxRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO closeness_decoder_schema.upload_event_outbox " +
+            "(friend_code, storage_key, created_at, expires_at) VALUES (?::uuid, ?, ?, ?)";
+
+    // SKIP LOCKED lets several instances drain disjoint batches concurrently
+    private static final String LOCK_BATCH_SQL =
+            "SELECT id, friend_code, storage_key, created_at, expires_at " +
+            "FROM closeness_decoder_schema.upload_event_outbox " +
+            "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM closeness_decoder_schema.upload_event_outbox WHERE id = ANY(?::bigint[])";
+
+    // measured with the database clock, which also stamped enqueued_at
+    private static final String BACKLOG_SQL =
+            "SELECT count(*), " +
+            "COALESCE(EXTRACT(EPOCH FROM (localtimestamp - min(enqueued_at))) * 1000, 0)::bigint " +
+            "FROM closeness_decoder_schema.upload_event_outbox";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void enqueue(List<FriendUploadEvent> events) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, events, events.size(), (ps, event) -> {
+            ps.setString(1, event.getFriendCode());
+            ps.setString(2, event.getS3FileKey());
+            ps.setLong(3, event.getCreatedAt());
+            ps.setLong(4, event.getExpiredAt());
+        });
+    }
+
+    /**
+     * Locks the oldest unlocked events until the surrounding transaction ends.
+     */
+    public List<OutboxEvent> lockBatch(int limit) {
+        return jdbcTemplate.query(LOCK_BATCH_SQL, (rs, rowNum) -> new OutboxEvent(
+                rs.getLong("id"),
+                new FriendUploadEvent(
+                        rs.getObject("friend_code", UUID.class).toString(),
+                        rs.getString("storage_key"),
+                        rs.getLong("created_at"),
+                        rs.getLong("expires_at"))), limit);
+    }
+
+    public void delete(Collection<Long> ids) {
+        jdbcTemplate.update(DELETE_SQL, ps ->
+                ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids.toArray())));
+    }
+
+    public Backlog backlog() {
+        return jdbcTemplate.queryForObject(BACKLOG_SQL,
+                (rs, rowNum) -> new Backlog(rs.getLong(1), rs.getLong(2)));
+    }
+
+    public record OutboxEvent(long id, FriendUploadEvent event) {
+    }
+
+    /**
+     * @param size  events waiting to be relayed
+     * @param lagMs age of the oldest waiting event
+     */
+    public record Backlog(long size, long lagMs) {
+    }
+}
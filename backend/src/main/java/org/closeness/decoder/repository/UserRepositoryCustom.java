@@ -0,0 +1,31 @@
+package org.closeness.decoder.repository;
+
+import org.closeness.decoder.model.User;
+
+import java.util.Optional;
+
+public interface UserRepositoryCustom {
+
+    /**
+     * Creates the user unless one with the same google id or email exists,
+     * in one statement, so two concurrent sign-ups cannot both pass a check.
+     *
+     * @return the new user, or empty if the user already exists
+     */
+    Optional<User> insertIfAbsent(String googleId, String email, String userName, String profilePicture);
+
+    /**
+     * Finds the user by google id, falling back to email, and applies a
+     * changed name or picture (and a missing google id) in the same statement.
+     * A null name or picture leaves the stored value alone.
+     *
+     * @return the user as stored after the call, or empty if there is none
+     */
+    Optional<SignedInUser> refreshOnSignIn(String googleId, String email, String userName, String profilePicture);
+
+    /**
+     * @param updated whether the sign-in changed the stored profile
+     */
+    record SignedInUser(User user, boolean updated) {
+    }
+}
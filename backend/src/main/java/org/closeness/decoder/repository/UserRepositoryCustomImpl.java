@@ -0,0 +1,87 @@
+package org.closeness.decoder.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.closeness.decoder.model.User;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@RequiredArgsConstructor
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+
+    // no conflict target, so a clash on either unique column means "already exists"
+    private static final String INSERT_IF_ABSENT_SQL =
+            "INSERT INTO closeness_decoder_schema.users " +
+            "(id, email, user_name, google_id, profile_picture, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT DO NOTHING " +
+            "RETURNING id, email, user_name, google_id, profile_picture, created_at, updated_at";
+
+    // the update only runs, and only writes a row version, when something changed
+    private static final String REFRESH_ON_SIGN_IN_SQL =
+            "WITH matched AS (" +
+            "SELECT * FROM closeness_decoder_schema.users " +
+            "WHERE google_id = ? OR email = ? " +
+            "ORDER BY google_id IS NOT DISTINCT FROM ? DESC " +
+            "LIMIT 1" +
+            "), changed AS (" +
+            "UPDATE closeness_decoder_schema.users u " +
+            "SET user_name = COALESCE(?, m.user_name), " +
+            "profile_picture = COALESCE(?, m.profile_picture), " +
+            "google_id = COALESCE(m.google_id, ?), " +
+            "updated_at = ? " +
+            "FROM matched m " +
+            "WHERE u.id = m.id AND (" +
+            "m.user_name IS DISTINCT FROM COALESCE(?, m.user_name) " +
+            "OR m.profile_picture IS DISTINCT FROM COALESCE(?, m.profile_picture) " +
+            "OR m.google_id IS NULL) " +
+            "RETURNING u.id, u.email, u.user_name, u.google_id, u.profile_picture, u.created_at, u.updated_at" +
+            ") " +
+            "SELECT c.*, true AS updated FROM changed c " +
+            "UNION ALL " +
+            "SELECT m.id, m.email, m.user_name, m.google_id, m.profile_picture, m.created_at, m.updated_at, " +
+            "false AS updated FROM matched m WHERE NOT EXISTS (SELECT 1 FROM changed)";
+
+    private static final RowMapper<User> USER_ROW_MAPPER = (rs, rowNum) -> mapUser(rs);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public Optional<User> insertIfAbsent(String googleId, String email, String userName, String profilePicture) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<User> inserted = jdbcTemplate.query(INSERT_IF_ABSENT_SQL, USER_ROW_MAPPER,
+                UUID.randomUUID(), email, userName, googleId, profilePicture, now, now);
+        return inserted.stream().findFirst();
+    }
+
+    @Override
+    public Optional<SignedInUser> refreshOnSignIn(String googleId, String email, String userName,
+                                                  String profilePicture) {
+        List<SignedInUser> rows = jdbcTemplate.query(REFRESH_ON_SIGN_IN_SQL,
+                (rs, rowNum) -> new SignedInUser(mapUser(rs), rs.getBoolean("updated")),
+                googleId, email, googleId,
+                userName, profilePicture, googleId, Timestamp.valueOf(LocalDateTime.now()),
+                userName, profilePicture);
+        return rows.stream().findFirst();
+    }
+
+    private static User mapUser(ResultSet rs) throws SQLException {
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        return new User(
+                rs.getObject("id", UUID.class),
+                rs.getString("email"),
+                rs.getString("user_name"),
+                rs.getString("google_id"),
+                rs.getString("profile_picture"),
+                createdAt != null ? createdAt.toLocalDateTime() : null,
+                updatedAt != null ? updatedAt.toLocalDateTime() : null);
+    }
+}
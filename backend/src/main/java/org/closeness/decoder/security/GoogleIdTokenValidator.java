@@ -0,0 +1,147 @@
+package org.closeness.decoder.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.security.Key;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Verifies Google ID tokens locally against signing keys held in memory.
+ * <p>
+ * Keys are fetched in the background and refreshed ahead of the max-age the
+ * publisher allows, so sign-in requests never wait on Google. Verification
+ * only reads an immutable key map and is safe to run concurrently. A token
+ * signed with a key we have not seen yet triggers an early refresh
+ * (throttled) and is rejected. Only a cold start with no keys at all loads
+ * them on the request path.
+ */
+@Component
+@Slf4j
+public class GoogleIdTokenValidator {
+
+    private static final Set<String> ISSUERS = Set.of("accounts.google.com", "https://accounts.google.com");
+    // same allowance as Google's own verifier
+    private static final long CLOCK_SKEW_SECONDS = 300;
+
+    private final GoogleSigningKeySource keySource;
+    private final TaskScheduler taskScheduler;
+    private final JwtParser parser;
+    private final double refreshAhead;
+    private final Duration minRefreshInterval;
+    private final Duration retryDelay;
+    private final AtomicLong lastEarlyRefresh = new AtomicLong();
+    private long lastColdLoad;
+    private volatile Map<String, PublicKey> keys = Map.of();
+
+    public GoogleIdTokenValidator(GoogleSigningKeySource keySource, TaskScheduler taskScheduler,
+                                  @Value("${google.client-id}") String clientId,
+                                  @Value("${google.keys.refresh-ahead:0.8}") double refreshAhead,
+                                  @Value("${google.keys.min-refresh-interval:1m}") Duration minRefreshInterval,
+                                  @Value("${google.keys.retry-delay:30s}") Duration retryDelay) {
+        this.keySource = keySource;
+        this.taskScheduler = taskScheduler;
+        this.refreshAhead = refreshAhead;
+        this.minRefreshInterval = minRefreshInterval;
+        this.retryDelay = retryDelay;
+        this.parser = Jwts.parser()
+                .keyLocator(new LocatorAdapter<Key>() {
+                    @Override
+                    protected Key locate(JwsHeader header) {
+                        return keyFor(header.getKeyId());
+                    }
+                })
+                .requireAudience(clientId)
+                .clockSkewSeconds(CLOCK_SKEW_SECONDS)
+                .build();
+    }
+
+    @PostConstruct
+    void start() {
+        taskScheduler.schedule(this::scheduledRefresh, Instant.now());
+    }
+
+    /**
+     * Verifies the token's signature, audience, issuer and expiry and returns
+     * its claims.
+     *
+     * @throws JwtException if the token is not a valid Google ID token for this client
+     */
+    public Claims verify(String idToken) {
+        if (keys.isEmpty()) {
+            loadCold();
+        }
+        Claims claims = parser.parseSignedClaims(idToken).getPayload();
+        if (!ISSUERS.contains(claims.getIssuer())) {
+            throw new JwtException("Unexpected ID token issuer: " + claims.getIssuer());
+        }
+        return claims;
+    }
+
+    private Key keyFor(String keyId) {
+        PublicKey key = keyId != null ? keys.get(keyId) : null;
+        if (key == null) {
+            refreshEarly();
+        }
+        return key;
+    }
+
+    private void refreshEarly() {
+        long now = System.currentTimeMillis();
+        long last = lastEarlyRefresh.get();
+        if (now - last >= minRefreshInterval.toMillis() && lastEarlyRefresh.compareAndSet(last, now)) {
+            taskScheduler.schedule(this::load, Instant.now());
+        }
+    }
+
+    private void scheduledRefresh() {
+        GoogleSigningKeys loaded = load();
+        Duration delay = retryDelay;
+        if (loaded != null) {
+            long aheadMs = (long) (loaded.maxAge().toMillis() * refreshAhead);
+            delay = Duration.ofMillis(Math.max(minRefreshInterval.toMillis(), aheadMs));
+        }
+        taskScheduler.schedule(this::scheduledRefresh, Instant.now().plus(delay));
+    }
+
+    // at most one blocking attempt per retry delay, so an unreachable key
+    // endpoint does not stall every sign-in behind its own fetch
+    private synchronized void loadCold() {
+        long now = System.currentTimeMillis();
+        if (keys.isEmpty() && now - lastColdLoad >= retryDelay.toMillis()) {
+            lastColdLoad = now;
+            load();
+        }
+    }
+
+    // serialized so a cold-start load and a background refresh do not both fetch
+    private synchronized GoogleSigningKeys load() {
+        try {
+            GoogleSigningKeys loaded = keySource.fetch();
+            if (loaded.keys().isEmpty()) {
+                log.warn("Google signing key source returned no keys, keeping {} cached keys", keys.size());
+                return null;
+            }
+            keys = Map.copyOf(loaded.keys());
+            log.info("Loaded {} Google signing keys, max-age {}", keys.size(), loaded.maxAge());
+            return loaded;
+        } catch (Exception e) {
+            log.error("Failed to fetch Google signing keys: {}", e.getMessage());
+            return null;
+        }
+    }
+}
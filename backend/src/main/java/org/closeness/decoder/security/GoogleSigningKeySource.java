@@ -0,0 +1,13 @@
+package org.closeness.decoder.security;
+
+import java.io.IOException;
+
+/**
+ * Where {@link GoogleIdTokenValidator} gets its keys from. The production
+ * source reads Google's JWKS endpoint; tests can supply a local key set.
+ */
+@FunctionalInterface
+public interface GoogleSigningKeySource {
+
+    GoogleSigningKeys fetch() throws IOException;
+}
@@ -0,0 +1,12 @@
+package org.closeness.decoder.security;
+
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Google's current ID-token signing keys by key id, and how long the
+ * publisher allows them to be cached.
+ */
+public record GoogleSigningKeys(Map<String, PublicKey> keys, Duration maxAge) {
+}
@@ -0,0 +1,76 @@
+package org.closeness.decoder.security;
+
+import io.jsonwebtoken.security.Jwk;
+import io.jsonwebtoken.security.JwkSet;
+import io.jsonwebtoken.security.Jwks;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads Google's signing keys from its JWKS endpoint and takes the cache
+ * lifetime from the response's Cache-Control max-age.
+ */
+@Component
+public class HttpGoogleSigningKeySource implements GoogleSigningKeySource {
+
+    private static final Pattern MAX_AGE = Pattern.compile("max-age=(\\d+)");
+
+    private final HttpClient httpClient;
+    private final URI certsUri;
+    private final Duration timeout;
+    private final Duration defaultMaxAge;
+
+    public HttpGoogleSigningKeySource(
+            @Value("${google.certs-url:https://www.googleapis.com/oauth2/v3/certs}") URI certsUri,
+            @Value("${google.certs-timeout:5s}") Duration timeout,
+            @Value("${google.certs-default-max-age:1h}") Duration defaultMaxAge) {
+        this.httpClient = HttpClient.newBuilder().connectTimeout(timeout).build();
+        this.certsUri = certsUri;
+        this.timeout = timeout;
+        this.defaultMaxAge = defaultMaxAge;
+    }
+
+    @Override
+    public GoogleSigningKeys fetch() throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(certsUri).timeout(timeout).GET().build();
+        HttpResponse<String> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted fetching Google signing keys", e);
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("Google signing keys returned HTTP " + response.statusCode());
+        }
+
+        JwkSet jwks = Jwks.setParser().build().parse(response.body());
+        Map<String, PublicKey> keys = new HashMap<>();
+        for (Jwk<?> jwk : jwks.getKeys()) {
+            if (jwk.getId() != null && jwk.toKey() instanceof PublicKey publicKey) {
+                keys.put(jwk.getId(), publicKey);
+            }
+        }
+        return new GoogleSigningKeys(Map.copyOf(keys), maxAge(response));
+    }
+
+    private Duration maxAge(HttpResponse<?> response) {
+        return response.headers().firstValue("Cache-Control")
+                .map(MAX_AGE::matcher)
+                .filter(Matcher::find)
+                .map(matcher -> Duration.ofSeconds(Long.parseLong(matcher.group(1))))
+                .orElse(defaultMaxAge);
+    }
+}
@@ -1,5 +1,6 @@
 package org.closeness.decoder.security;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -7,7 +8,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.closeness.decoder.model.User;
-import org.closeness.decoder.repository.UserRepository;
+import org.closeness.decoder.service.cache.UserPrincipalCache;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -27,7 +28,8 @@ import java.util.UUID;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtTokenProvider jwtTokenProvider;
-    private final UserRepository userRepository;
+    private final UserPrincipalCache userPrincipalCache;
+    private final TokenRevocationService tokenRevocationService;
 
     @Override
     protected void doFilterInternal(
@@ -38,10 +40,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = extractJwtFromRequest(request);
 
-            if (StringUtils.hasText(jwt) && jwtTokenProvider.validateToken(jwt)) {
-                String userId = jwtTokenProvider.extractUserId(jwt);
+            Claims claims = StringUtils.hasText(jwt) ? jwtTokenProvider.verify(jwt) : null;
+            if (claims != null && tokenRevocationService.isRevoked(claims.getId())) {
+                log.debug("Rejected revoked token for userId: {}", claims.getSubject());
+            } else if (claims != null) {
+                String userId = claims.getSubject();
 
-                Optional<User> userOptional = userRepository.findById(UUID.fromString(userId));
+                Optional<User> userOptional = userPrincipalCache.get(UUID.fromString(userId));
 
                 if (userOptional.isPresent()) {
                     User user = userOptional.get();
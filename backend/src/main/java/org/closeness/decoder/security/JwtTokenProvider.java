@@ -1,5 +1,8 @@
 package org.closeness.decoder.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
@@ -10,26 +13,45 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.time.Duration;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
+/**
+ * Issues and verifies access tokens. The signing key and parser are built
+ * once; each token is parsed and verified once, and its claims are kept in a
+ * small cache until the token expires so repeat requests skip the HMAC.
+ */
 @Slf4j
 @Component
 public class JwtTokenProvider {
 
-    @Value("${app.jwt.secret}")
-    private String jwtSecret;
-
-    @Value("${app.jwt.expiration-ms}")
-    private long jwtExpirationMs;
+    private final long jwtExpirationMs;
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+    private final Cache<String, Claims> verifiedTokens;
+
+    public JwtTokenProvider(@Value("${app.jwt.secret}") String jwtSecret,
+                            @Value("${app.jwt.expiration-ms}") long jwtExpirationMs,
+                            @Value("${app.jwt.verified-cache.maximum-size:10000}") long verifiedCacheSize,
+                            @Value("${app.jwt.verified-cache.max-ttl:5m}") Duration verifiedCacheMaxTtl) {
+        this.jwtExpirationMs = jwtExpirationMs;
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        this.parser = Jwts.parser().verifyWith(signingKey).build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheSize)
+                .expireAfter(untilTokenExpiry(verifiedCacheMaxTtl.toNanos()))
+                .build();
+    }
 
     public String generateToken(User user) {
         Map<String, Object> claims = new HashMap<>();
         claims.put("email", user.getEmail());
         claims.put("userName", user.getUserName());
-        
+
         return createToken(claims, user.getId().toString());
     }
 
@@ -39,13 +61,41 @@ public class JwtTokenProvider {
 
         return Jwts.builder()
                 .claims(claims)
+                .id(UUID.randomUUID().toString())
                 .subject(subject)
                 .issuedAt(now)
                 .expiration(expiryDate)
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
 
+    /**
+     * Verifies the token and returns its claims, or null if it is invalid or
+     * expired. A token verified earlier is answered from the cache.
+     */
+    public Claims verify(String token) {
+        Claims cached = verifiedTokens.getIfPresent(token);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            Claims claims = parser.parseSignedClaims(token).getPayload();
+            verifiedTokens.put(token, claims);
+            return claims;
+        } catch (SignatureException e) {
+            log.error("Invalid JWT signature: {}", e.getMessage());
+        } catch (MalformedJwtException e) {
+            log.error("Invalid JWT token: {}", e.getMessage());
+        } catch (ExpiredJwtException e) {
+            log.error("JWT token is expired: {}", e.getMessage());
+        } catch (UnsupportedJwtException e) {
+            log.error("JWT token is unsupported: {}", e.getMessage());
+        } catch (IllegalArgumentException e) {
+            log.error("JWT claims string is empty: {}", e.getMessage());
+        }
+        return null;
+    }
+
     public String extractUserId(String token) {
         return extractClaim(token, Claims::getSubject);
     }
@@ -64,32 +114,12 @@ public class JwtTokenProvider {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        Claims cached = verifiedTokens.getIfPresent(token);
+        return cached != null ? cached : parser.parseSignedClaims(token).getPayload();
     }
 
     public boolean validateToken(String token) {
-        try {
-            Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token);
-            return true;
-        } catch (SignatureException e) {
-            log.error("Invalid JWT signature: {}", e.getMessage());
-        } catch (MalformedJwtException e) {
-            log.error("Invalid JWT token: {}", e.getMessage());
-        } catch (ExpiredJwtException e) {
-            log.error("JWT token is expired: {}", e.getMessage());
-        } catch (UnsupportedJwtException e) {
-            log.error("JWT token is unsupported: {}", e.getMessage());
-        } catch (IllegalArgumentException e) {
-            log.error("JWT claims string is empty: {}", e.getMessage());
-        }
-        return false;
+        return verify(token) != null;
     }
 
     public boolean isTokenExpired(String token) {
@@ -104,8 +134,28 @@ public class JwtTokenProvider {
         return jwtExpirationMs;
     }
 
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(jwtSecret);
-        return Keys.hmacShaKeyFor(keyBytes);
+    // an entry never outlives its token, nor maxTtlNanos
+    private static Expiry<String, Claims> untilTokenExpiry(long maxTtlNanos) {
+        return new Expiry<>() {
+            @Override
+            public long expireAfterCreate(String token, Claims claims, long currentTime) {
+                Date expiration = claims.getExpiration();
+                if (expiration == null) {
+                    return maxTtlNanos;
+                }
+                long remaining = Duration.ofMillis(expiration.getTime() - System.currentTimeMillis()).toNanos();
+                return Math.max(0, Math.min(maxTtlNanos, remaining));
+            }
+
+            @Override
+            public long expireAfterUpdate(String token, Claims claims, long currentTime, long currentDuration) {
+                return expireAfterCreate(token, claims, currentTime);
+            }
+
+            @Override
+            public long expireAfterRead(String token, Claims claims, long currentTime, long currentDuration) {
+                return currentDuration;
+            }
+        };
     }
 }
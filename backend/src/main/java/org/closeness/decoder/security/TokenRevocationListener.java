@@ -0,0 +1,20 @@
+package org.closeness.decoder.security;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+@Component
+@RequiredArgsConstructor
+public class TokenRevocationListener implements MessageListener {
+
+    private final TokenRevocationService tokenRevocationService;
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        tokenRevocationService.recordLocally(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,108 @@
+package org.closeness.decoder.security;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.closeness.decoder.service.RedisCacheService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Date;
+
+/**
+ * Revoked access tokens, keyed by their jti claim.
+ * <p>
+ * Redis is the source of truth: each revocation is a key that lives as long
+ * as the token would have. Every instance mirrors the revoked ids into a
+ * local Bloom filter, fed by pub/sub and rebuilt from Redis on a schedule
+ * (which also drops expired ids and repairs missed messages). A token whose
+ * id is not in the filter is known not to be revoked without a network call;
+ * only filter positives are confirmed against Redis.
+ */
+@Component
+@Slf4j
+public class TokenRevocationService {
+
+    private final RedisCacheService redisCacheService;
+    private final int expectedRevocations;
+    private final double falsePositiveRate;
+    private volatile BloomFilter current;
+    // still consulted while a rebuild is scanning Redis into current
+    private volatile BloomFilter previous;
+
+    public TokenRevocationService(
+            RedisCacheService redisCacheService,
+            @Value("${app.jwt.revocation.expected-revocations:100000}") int expectedRevocations,
+            @Value("${app.jwt.revocation.false-positive-rate:0.001}") double falsePositiveRate) {
+        this.redisCacheService = redisCacheService;
+        this.expectedRevocations = expectedRevocations;
+        this.falsePositiveRate = falsePositiveRate;
+        this.current = newFilter();
+        this.previous = newFilter();
+    }
+
+    @PostConstruct
+    void init() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            // the filter starts empty; the next scheduled rebuild fills it
+            log.error("Failed to load revoked tokens: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Revokes the token with this id until its expiration.
+     */
+    public void revoke(String tokenId, Date expiration) {
+        long ttlMs = expiration.getTime() - System.currentTimeMillis();
+        if (ttlMs <= 0) {
+            return;
+        }
+        recordLocally(tokenId);
+        redisCacheService.revokeToken(tokenId, Duration.ofMillis(ttlMs));
+    }
+
+    public boolean isRevoked(String tokenId) {
+        if (tokenId == null) {
+            // issued before tokens carried an id; they lapse on their own
+            return false;
+        }
+        if (!current.mightContain(tokenId) && !previous.mightContain(tokenId)) {
+            return false;
+        }
+        return redisCacheService.isTokenRevoked(tokenId);
+    }
+
+    // revocations are rare, so they share a lock with the swap in rebuild
+    // rather than risk landing in a filter that is being retired
+    synchronized void recordLocally(String tokenId) {
+        current.add(tokenId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.jwt.revocation.rebuild-interval-ms:600000}",
+            initialDelayString = "${app.jwt.revocation.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        BloomFilter fresh = newFilter();
+        synchronized (this) {
+            previous = current;
+            current = fresh;
+        }
+        int count = 0;
+        for (String tokenId : redisCacheService.revokedTokenIds()) {
+            fresh.add(tokenId);
+            count++;
+        }
+        previous = newFilter();
+        if (count > expectedRevocations) {
+            log.warn("{} revoked tokens exceed the filter's expected {}, raise "
+                    + "app.jwt.revocation.expected-revocations", count, expectedRevocations);
+        }
+        log.debug("Rebuilt token revocation filter with {} ids", count);
+    }
+
+    private BloomFilter newFilter() {
+        return new BloomFilter(expectedRevocations, falsePositiveRate);
+    }
+}
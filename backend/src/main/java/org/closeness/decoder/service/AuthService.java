@@ -7,4 +7,10 @@ public interface AuthService {
     AuthResponse signUp(String googleCredential);
 
     AuthResponse signIn(String googleCredential);
+
+    /**
+     * Revokes the given access token until it expires. Invalid tokens and
+     * tokens without an id are ignored.
+     */
+    void logout(String accessToken);
 }
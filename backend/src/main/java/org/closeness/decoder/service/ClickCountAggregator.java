@@ -0,0 +1,114 @@
+package org.closeness.decoder.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Counts friend link clicks in memory and publishes one delta event per
+ * friend code per window instead of one record per click. Increments are
+ * lock-free; only flushes are serialized, and they never run on the
+ * clicking request's thread.
+ */
+@Service
+@Slf4j
+public class ClickCountAggregator {
+
+    private final KafkaProducer kafkaProducer;
+    private final TaskScheduler taskScheduler;
+    private final int maxPendingKeys;
+    private final long minFlushIntervalMs;
+    private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean earlyFlushScheduled = new AtomicBoolean();
+    private volatile long windowStart = System.currentTimeMillis();
+
+    public ClickCountAggregator(KafkaProducer kafkaProducer, TaskScheduler taskScheduler,
+                                @Value("${app.clicks.max-pending-keys:10000}") int maxPendingKeys,
+                                @Value("${app.clicks.min-flush-interval-ms:100}") long minFlushIntervalMs) {
+        this.kafkaProducer = kafkaProducer;
+        this.taskScheduler = taskScheduler;
+        this.maxPendingKeys = maxPendingKeys;
+        this.minFlushIntervalMs = minFlushIntervalMs;
+    }
+
+    public void recordClick(String friendCode) {
+        LongAdder counter = counterFor(friendCode);
+        counter.increment();
+        // a flush may have retired this adder while we held it, after its last
+        // drain; move whatever it missed onto the live adder
+        while (counters.get(friendCode) != counter) {
+            long missed = counter.sumThenReset();
+            if (missed == 0) {
+                break;
+            }
+            counter = counterFor(friendCode);
+            counter.add(missed);
+        }
+
+        // size threshold: ask the scheduler for an early flush, at most one
+        // pending and no sooner than minFlushIntervalMs after the last window
+        if (counters.size() >= maxPendingKeys && earlyFlushScheduled.compareAndSet(false, true)) {
+            taskScheduler.schedule(this::earlyFlush, Instant.ofEpochMilli(windowStart + minFlushIntervalMs));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.clicks.flush-interval-ms:1000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            publishDeltas();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void earlyFlush() {
+        earlyFlushScheduled.set(false);
+        flush();
+    }
+
+    private LongAdder counterFor(String friendCode) {
+        LongAdder counter = counters.get(friendCode);
+        return counter != null ? counter : counters.computeIfAbsent(friendCode, key -> new LongAdder());
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void publishDeltas() {
+        long windowEnd = System.currentTimeMillis();
+        int published = 0;
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            LongAdder counter = entry.getValue();
+            long count = counter.sumThenReset();
+            if (count == 0) {
+                // idle since the last window; drop it and pick up any click that raced the
+                // removal. Clicks after this drain see the adder unmapped and move themselves
+                counters.remove(entry.getKey(), counter);
+                count = counter.sumThenReset();
+                if (count == 0) {
+                    continue;
+                }
+            }
+            kafkaProducer.publishClickDelta(entry.getKey(), count, windowStart, windowEnd);
+            published++;
+        }
+        if (published > 0) {
+            log.debug("Published {} click deltas for window {}-{}", published, windowStart, windowEnd);
+        }
+        windowStart = windowEnd;
+    }
+}
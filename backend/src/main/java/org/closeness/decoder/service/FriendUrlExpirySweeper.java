@@ -0,0 +1,75 @@
+package org.closeness.decoder.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.closeness.decoder.dto.ExpiryStateStore;
+import org.closeness.decoder.repository.FriendUrlRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Expires overdue links straight from the table, in batches. The Kafka
+ * Streams expiry path normally gets there first; the sweeper only looks at
+ * links overdue by more than the grace period, so it catches what that path
+ * missed or is running behind on. Both paths go through
+ * {@link S3CleanupService#handleExpiryBatch}, whose deactivate releases each
+ * blob reference exactly once no matter which path, or how many instances,
+ * get to a link.
+ */
+@Component
+@Slf4j
+public class FriendUrlExpirySweeper {
+
+    private final FriendUrlRepository friendUrlRepository;
+    private final S3CleanupService s3CleanupService;
+    private final Duration grace;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+
+    public FriendUrlExpirySweeper(FriendUrlRepository friendUrlRepository,
+                                  S3CleanupService s3CleanupService,
+                                  @Value("${app.friend-urls.sweeper.grace:5m}") Duration grace,
+                                  @Value("${app.friend-urls.sweeper.batch-size:1000}") int batchSize,
+                                  @Value("${app.friend-urls.sweeper.max-batches-per-run:20}") int maxBatchesPerRun) {
+        this.friendUrlRepository = friendUrlRepository;
+        this.s3CleanupService = s3CleanupService;
+        this.grace = grace;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+    }
+
+    @Scheduled(fixedDelayString = "${app.friend-urls.sweeper.interval-ms:60000}")
+    public void sweep() {
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minus(grace);
+            int swept = 0;
+            for (int i = 0; i < maxBatchesPerRun; i++) {
+                List<ExpiryStateStore> overdue = friendUrlRepository.findOverdue(cutoff, batchSize);
+                if (overdue.isEmpty()) {
+                    break;
+                }
+                Set<String> failed = s3CleanupService.handleExpiryBatch(overdue);
+                if (!failed.isEmpty()) {
+                    log.warn("Sweeper could not delete objects for {} friend urls", failed.size());
+                }
+                swept += overdue.size();
+                if (overdue.size() < batchSize) {
+                    break;
+                }
+            }
+            if (swept > 0) {
+                log.warn("Swept {} friend urls overdue by more than {}, the streams expiry path is behind",
+                        swept, grace);
+            }
+            // also retries object deletes that failed after their links expired
+            s3CleanupService.purgeReleasedBlobs(batchSize);
+        } catch (Exception e) {
+            log.error("Sweeping overdue friend urls failed, retrying next run: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.closeness.decoder.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.closeness.decoder.repository.FriendUrlPartitionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keeps friend_urls' daily partitions ahead of the clock and retires old
+ * ones. A partition is retired only once it is past retention and none of
+ * its links are still active, so a long-lived link keeps its day around.
+ * Retired partitions are detached and kept as archive tables, or dropped
+ * when retention-action is drop. The legacy partition, holding every link
+ * created before partitioning, is retired as a whole the same way once its
+ * newest day is past retention and its last link has expired. Every step is
+ * idempotent, so several instances can run it.
+ */
+@Component
+@Slf4j
+public class FriendUrlPartitionMaintenance {
+
+    private final FriendUrlPartitionRepository partitionRepository;
+    private final int premakeDays;
+    private final int retentionDays;
+    private final boolean dropRetired;
+
+    public FriendUrlPartitionMaintenance(FriendUrlPartitionRepository partitionRepository,
+                                         @Value("${app.friend-urls.partition.premake-days:3}") int premakeDays,
+                                         @Value("${app.friend-urls.partition.retention-days:30}") int retentionDays,
+                                         @Value("${app.friend-urls.partition.retention-action:detach}") String retentionAction) {
+        this.partitionRepository = partitionRepository;
+        this.premakeDays = premakeDays;
+        this.retentionDays = retentionDays;
+        this.dropRetired = "drop".equalsIgnoreCase(retentionAction);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${app.friend-urls.partition.cron:0 15 * * * *}")
+    public void maintain() {
+        // created_at is written in local time, so partition days are local days
+        LocalDate today = LocalDate.now();
+        try {
+            // days up to the cutover belong to the legacy partition
+            LocalDate firstDaily = partitionRepository.legacyEnd().orElse(today);
+            for (int i = 0; i <= premakeDays; i++) {
+                LocalDate day = today.plusDays(i);
+                if (!day.isBefore(firstDaily)) {
+                    partitionRepository.createIfAbsent(day);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Creating friend url partitions failed, retrying next run: {}", e.getMessage());
+            return;
+        }
+
+        // a concurrent detach cut short leaves its partition pending, and detaching
+        // it again fails until the detach is finalized
+        List<LocalDate> detachPending;
+        List<LocalDate> attached;
+        try {
+            detachPending = partitionRepository.detachPendingDays();
+            attached = partitionRepository.attachedDays();
+        } catch (Exception e) {
+            log.error("Listing friend url partitions failed, retrying next run: {}", e.getMessage());
+            return;
+        }
+        for (LocalDate day : detachPending) {
+            try {
+                partitionRepository.finalizeDetach(day);
+                retired(day);
+            } catch (Exception e) {
+                log.error("Finalizing detach of friend url partition for {} failed: {}", day, e.getMessage());
+            }
+        }
+
+        LocalDate oldestKept = today.minusDays(retentionDays);
+        retireLegacy(oldestKept);
+        for (LocalDate day : attached) {
+            if (!day.isBefore(oldestKept)) {
+                continue;
+            }
+            try {
+                if (partitionRepository.hasActiveRows(day)) {
+                    continue;
+                }
+                partitionRepository.detach(day);
+                retired(day);
+            } catch (Exception e) {
+                log.error("Retiring friend url partition for {} failed: {}", day, e.getMessage());
+            }
+        }
+    }
+
+    private void retireLegacy(LocalDate oldestKept) {
+        try {
+            if (partitionRepository.legacyDetachPending()) {
+                partitionRepository.finalizeLegacyDetach();
+            } else {
+                // legacyEnd is the first day the legacy partition does not hold
+                Optional<LocalDate> legacyEnd = partitionRepository.legacyEnd();
+                if (legacyEnd.isEmpty() || legacyEnd.get().isAfter(oldestKept)
+                        || partitionRepository.legacyHasActiveRows()) {
+                    return;
+                }
+                partitionRepository.detachLegacy();
+            }
+            if (dropRetired) {
+                partitionRepository.dropLegacy();
+            }
+            log.info("Retired legacy friend url partition ({})", dropRetired ? "dropped" : "detached");
+        } catch (Exception e) {
+            log.error("Retiring legacy friend url partition failed: {}", e.getMessage());
+        }
+    }
+
+    private void retired(LocalDate day) {
+        if (dropRetired) {
+            partitionRepository.drop(day);
+        }
+        log.info("Retired friend url partition for {} ({})", day, dropRetired ? "dropped" : "detached");
+    }
+}
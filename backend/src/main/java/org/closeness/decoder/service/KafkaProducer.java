@@ -7,6 +7,9 @@ import org.closeness.decoder.dto.FriendUploadEvent;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 @Service
 @Slf4j
 public class KafkaProducer {
@@ -17,31 +20,30 @@ public class KafkaProducer {
         this.kafkaTemplate = kafkaTemplate;
     }
 
-    public void publishUploadEvent(String friendCode, String storageKey,
-                                   long createdAt,
-                                   long expiresAt) {
-        FriendUploadEvent friendUploadEvent
-                = new FriendUploadEvent(friendCode, storageKey, createdAt, expiresAt);
-        kafkaTemplate.send(
-                KafkaTopic.UPLOAD_EVENT.getTopicName(),
-                friendCode,
-                friendUploadEvent
-        ).whenComplete((result, ex) -> {
-            String topic = KafkaTopic.UPLOAD_EVENT.getTopicName();
+    /**
+     * Sends the events back to back so the producer can group them into one
+     * batch per partition.
+     *
+     * @return completes once every event is acknowledged, or with the first failure
+     */
+    public CompletableFuture<Void> sendUploadEvents(List<FriendUploadEvent> events) {
+        String topic = KafkaTopic.UPLOAD_EVENT.getTopicName();
+        CompletableFuture<?>[] sends = new CompletableFuture<?>[events.size()];
+        for (int i = 0; i < events.size(); i++) {
+            FriendUploadEvent event = events.get(i);
+            sends[i] = kafkaTemplate.send(topic, event.getFriendCode(), event);
+        }
+        return CompletableFuture.allOf(sends).whenComplete((result, ex) -> {
             if (ex != null) {
-                log.error("Failed to send to {}: {}", topic, ex.getMessage());
-            } else {
-                log.info("Sent to {} partition {} offset {}",
-                        topic,
-                        result.getRecordMetadata().partition(),
-                        result.getRecordMetadata().offset());
+                log.error("Failed to send upload events to {}: {}", topic, ex.getMessage());
             }
         });
     }
 
-    public void publishClickEvent(String friendCode, long clickedAt) {
+    public void publishClickDelta(String friendCode, long count,
+                                  long windowStart, long windowEnd) {
         FriendClickEvent friendClickEvent
-                = new FriendClickEvent(friendCode, clickedAt);
+                = new FriendClickEvent(friendCode, count, windowStart, windowEnd);
         kafkaTemplate.send(
                 KafkaTopic.CLICK_EVENT.getTopicName(),
                 friendCode,
@@ -51,7 +53,7 @@ public class KafkaProducer {
             if (ex != null) {
                 log.error("Failed to send to {}: {}", topic, ex.getMessage());
             } else {
-                log.info("Sent to {} partition {} offset {}",
+                log.debug("Sent to {} partition {} offset {}",
                         topic,
                         result.getRecordMetadata().partition(),
                         result.getRecordMetadata().offset());
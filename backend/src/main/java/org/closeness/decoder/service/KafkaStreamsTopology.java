@@ -8,27 +8,46 @@ import org.apache.kafka.streams.Topology;
 import org.apache.kafka.streams.kstream.Consumed;
 import org.apache.kafka.streams.kstream.KStream;
 import org.apache.kafka.streams.state.Stores;
+import org.closeness.decoder.configuration.ExecutorConfig;
 import org.closeness.decoder.configuration.KafkaTopic;
 import org.closeness.decoder.dto.ExpiryStateStore;
+import org.closeness.decoder.dto.FriendClickEvent;
+import org.closeness.decoder.dto.FriendUploadEvent;
 import org.closeness.decoder.service.processor.ClickEventProcessor;
 import org.closeness.decoder.service.processor.UploadEventProcessor;
+import org.closeness.decoder.service.serde.ExpiryStateStoreSerde;
+import org.closeness.decoder.service.serde.FriendEventSerdes;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.stereotype.Component;
 import tools.jackson.databind.ObjectMapper;
 
+import java.util.concurrent.Executor;
+
 @Component
 @Slf4j
 public class KafkaStreamsTopology {
     private final S3CleanupService s3CleanupService;
-    private final ObjectMapper objectMapper;
+    private final Executor clickFlushExecutor;
+    private final Executor expiryExecutor;
+    private final int expiryBatchSize;
 
 
-    public static final String EXPIRY_STORE = "expiry-store";
-    public static final String CLICK_STORE = "click-store";
+    public static final String EXPIRY_STORE = "expiry-store-v2";
+    public static final String CLICK_STORE = "click-store-v2";
+    // string-keyed stores from before binary keys; drained into the v2 stores on task init
+    public static final String LEGACY_EXPIRY_STORE = "expiry-store";
+    public static final String LEGACY_CLICK_STORE = "click-store";
 
-    public KafkaStreamsTopology(S3CleanupService s3CleanupService, ObjectMapper objectMapper) {
+    public KafkaStreamsTopology(S3CleanupService s3CleanupService,
+                                @Qualifier(ExecutorConfig.CLICK_FLUSH_EXECUTOR) Executor clickFlushExecutor,
+                                @Qualifier(ExecutorConfig.EXPIRY_EXECUTOR) Executor expiryExecutor,
+                                @Value("${app.streams.expiry.batch-size:1000}") int expiryBatchSize) {
         this.s3CleanupService = s3CleanupService;
-        this.objectMapper = objectMapper;
+        this.clickFlushExecutor = clickFlushExecutor;
+        this.expiryExecutor = expiryExecutor;
+        this.expiryBatchSize = expiryBatchSize;
     }
 
     public static <T> Serde<T> objectSerde(Class<T> classType) {
@@ -55,18 +74,19 @@ public class KafkaStreamsTopology {
     public Topology buildStreamsTopology(StreamsBuilder builder) {
         registerStateStores(builder);
 
-        KStream<String, String> uploadStream = builder.stream(
+        KStream<String, FriendUploadEvent> uploadStream = builder.stream(
                 KafkaTopic.UPLOAD_EVENT.getTopicName(),
-                Consumed.with(Serdes.String(), Serdes.String()));
+                Consumed.with(Serdes.String(), FriendEventSerdes.uploadEvent()));
         uploadStream.process(
-                () -> new UploadEventProcessor(s3CleanupService, objectMapper),
-                EXPIRY_STORE,CLICK_STORE);
-        KStream<String, String> clickStream = builder.stream(
+                () -> new UploadEventProcessor(s3CleanupService,
+                        expiryExecutor, expiryBatchSize),
+                EXPIRY_STORE, CLICK_STORE, LEGACY_EXPIRY_STORE);
+        KStream<String, FriendClickEvent> clickStream = builder.stream(
                 KafkaTopic.CLICK_EVENT.getTopicName(),
-                Consumed.with(Serdes.String(), Serdes.String()));
+                Consumed.with(Serdes.String(), FriendEventSerdes.clickEvent()));
         clickStream.process(
-                () -> new ClickEventProcessor(s3CleanupService, objectMapper),
-                CLICK_STORE);
+                () -> new ClickEventProcessor(s3CleanupService, clickFlushExecutor),
+                CLICK_STORE, LEGACY_CLICK_STORE);
 
         return builder.build();
     }
@@ -75,13 +95,27 @@ public class KafkaStreamsTopology {
         builder.addStateStore(
                 Stores.keyValueStoreBuilder(
                         Stores.persistentKeyValueStore(EXPIRY_STORE),
+                        Serdes.Bytes(),
+                        new ExpiryStateStoreSerde()
+                )
+        );
+        builder.addStateStore(
+                Stores.keyValueStoreBuilder(
+                        Stores.persistentKeyValueStore(CLICK_STORE),
+                        Serdes.Bytes(),
+                        Serdes.Long()
+                )
+        );
+        builder.addStateStore(
+                Stores.keyValueStoreBuilder(
+                        Stores.persistentKeyValueStore(LEGACY_EXPIRY_STORE),
                         Serdes.String(),
                         objectSerde(ExpiryStateStore.class)
                 )
         );
         builder.addStateStore(
                 Stores.keyValueStoreBuilder(
-                        Stores.persistentKeyValueStore(CLICK_STORE),
+                        Stores.persistentKeyValueStore(LEGACY_CLICK_STORE),
                         Serdes.String(),
                         Serdes.Long()
                 )
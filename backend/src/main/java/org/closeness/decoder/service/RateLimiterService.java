@@ -1,23 +1,143 @@
 package org.closeness.decoder.service;
 
-import lombok.RequiredArgsConstructor;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.closeness.decoder.annotation.RateLimitAlgorithm;
+import org.closeness.decoder.dto.RateLimitDecision;
+import org.closeness.decoder.dto.RateLimitLease;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Two-tier limiter. Each key leases a block of its quota from Redis and
+ * spends it locally, so most checks never leave the JVM; the lease is renewed
+ * once it is used up or goes stale. Denials are also remembered until the
+ * client may retry. The global limit stays approximately right across
+ * instances: leased requests that are not used before the lease goes stale
+ * are lost, never handed out twice, so the error is on the strict side.
+ * <p>
+ * Lease sizes follow each key's observed rate, so little is lost that way:
+ * a key starts with a lease of one request, doubles it while leases are used
+ * up before they go stale, and falls back to what it actually used when a
+ * lease goes stale unspent. A client calling less often than the lease ttl
+ * therefore always leases one request at a time and gets its full limit.
+ * <p>
+ * Per-key state lives in a bounded cache that drops idle keys, so a wide
+ * spread of client addresses cannot grow the heap without limit.
+ */
 @Service
-@RequiredArgsConstructor
 public class RateLimiterService {
 
     private final RedisCacheService redisCacheService;
+    private final Cache<String, LocalQuota> quotas;
+    private final double leaseFraction;
+    private final int maxLease;
+    private final long leaseTtlMs;
 
-    public boolean isAllowed(String key, int maxRequests, int windowSeconds) {
-        Long count = redisCacheService.createOrUpdateRateLimitKey(key, windowSeconds);
-        return count != null && count <= maxRequests;
+    public RateLimiterService(RedisCacheService redisCacheService,
+                              @Value("${app.rate-limit.lease-fraction:0.1}") double leaseFraction,
+                              @Value("${app.rate-limit.max-lease:50}") int maxLease,
+                              @Value("${app.rate-limit.lease-ttl:1s}") Duration leaseTtl,
+                              @Value("${app.rate-limit.maximum-keys:100000}") long maximumKeys,
+                              @Value("${app.rate-limit.idle-ttl:2m}") Duration idleTtl) {
+        this.redisCacheService = redisCacheService;
+        this.leaseFraction = leaseFraction;
+        this.maxLease = maxLease;
+        this.leaseTtlMs = leaseTtl.toMillis();
+        this.quotas = Caffeine.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfterAccess(idleTtl)
+                .build();
     }
 
-    public long getTimeToReset(String key) {
-        Long ttl = redisCacheService.getTimeToReset(key);
-        return ttl != null ? ttl : 0;
+    /**
+     * Counts one request against the key and reports whether it is allowed.
+     * Redis is only called when the key's local lease is used up or stale.
+     */
+    public RateLimitDecision acquire(String key, RateLimitAlgorithm algorithm, int maxRequests, int windowSeconds) {
+        long now = System.currentTimeMillis();
+        LocalQuota quota = quotas.get(key, k -> new LocalQuota());
+        RateLimitDecision decision = quota.tryConsume(now, maxRequests);
+        if (decision != null) {
+            return decision;
+        }
+        // one renewal per key at a time; late arrivals take from the fresh lease
+        synchronized (quota) {
+            decision = quota.tryConsume(now, maxRequests);
+            if (decision != null) {
+                return decision;
+            }
+            long windowMs = windowSeconds * 1000L;
+            int wanted = quota.nextLeaseSize(now, maxLeaseSize(maxRequests));
+            RateLimitLease lease = redisCacheService.leaseRateLimit(key, algorithm, maxRequests, windowMs, wanted);
+            return quota.renew(lease, now, Math.min(leaseTtlMs, windowMs), maxRequests);
+        }
     }
-}
\ No newline at end of file
+
+    private int maxLeaseSize(int maxRequests) {
+        return (int) Math.max(1, Math.min(maxLease, (long) (maxRequests * leaseFraction)));
+    }
+
+    private static final class LocalQuota {
+
+        private final AtomicLong tokens = new AtomicLong();
+        private volatile long validUntil;
+        private volatile long blockedUntil;
+        private volatile long resetAt;
+        // what Redis had left when the lease was taken
+        private volatile long remoteRemaining;
+        // only touched while renewing, under the quota's lock
+        private long granted;
+        private int leaseSize = 1;
+
+        // null when the lease is spent or stale and Redis has to be asked
+        RateLimitDecision tryConsume(long now, int limit) {
+            if (now < blockedUntil) {
+                return new RateLimitDecision(false, limit, 0, Math.max(0, resetAt - now), blockedUntil - now);
+            }
+            if (now >= validUntil) {
+                return null;
+            }
+            long available;
+            do {
+                available = tokens.get();
+                if (available <= 0) {
+                    return null;
+                }
+            } while (!tokens.compareAndSet(available, available - 1));
+            return new RateLimitDecision(true, limit, remoteRemaining + available - 1,
+                    Math.max(0, resetAt - now), 0);
+        }
+
+        // sized from how much of the previous lease was used while it was valid
+        int nextLeaseSize(long now, int cap) {
+            long unused = Math.max(0, tokens.get());
+            if (now < validUntil && unused == 0) {
+                leaseSize = (int) Math.min(cap, leaseSize * 2L);
+            } else if (unused > 0) {
+                leaseSize = (int) Math.max(1, granted - unused);
+            }
+            leaseSize = Math.min(leaseSize, cap);
+            return leaseSize;
+        }
+
+        RateLimitDecision renew(RateLimitLease lease, long now, long ttlMs, int limit) {
+            resetAt = now + lease.resetMs();
+            remoteRemaining = lease.remaining();
+            granted = lease.granted();
+            if (lease.granted() <= 0) {
+                tokens.set(0);
+                validUntil = now;
+                blockedUntil = now + lease.retryAfterMs();
+                return new RateLimitDecision(false, limit, 0, lease.resetMs(), lease.retryAfterMs());
+            }
+            // the caller takes the first request of the lease
+            tokens.set(lease.granted() - 1);
+            validUntil = now + ttlMs;
+            return new RateLimitDecision(true, limit, lease.remaining() + lease.granted() - 1, lease.resetMs(), 0);
+        }
+    }
+}
@@ -1,42 +1,213 @@
 package org.closeness.decoder.service;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.closeness.decoder.annotation.RateLimitAlgorithm;
+import org.closeness.decoder.dto.CachedFriendLink;
+import org.closeness.decoder.dto.RateLimitLease;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class RedisCacheService {
 
+    public static final String FRIEND_URL_DEACTIVATED_CHANNEL = "friend-url:deactivated";
+    public static final String TOKEN_REVOKED_CHANNEL = "auth:token-revoked";
+
+    private static final String DEAD_FRIEND_URL_PREFIX = "friend-url:dead:";
+    private static final String PENDING_UPLOAD_PREFIX = "upload:pending:";
+    private static final String RATE_LIMIT_PREFIX = "ratelimit:";
+    private static final String REVOKED_TOKEN_PREFIX = "auth:revoked:";
+    private static final char EXPIRY_SEPARATOR = '|';
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static final RedisScript<List<Long>> GCRA_SCRIPT = (RedisScript) RedisScript.of(
+            new ClassPathResource("scripts/rate_limit_gcra.lua"), List.class);
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static final RedisScript<List<Long>> SLIDING_WINDOW_SCRIPT = (RedisScript) RedisScript.of(
+            new ClassPathResource("scripts/rate_limit_sliding_window.lua"), List.class);
+
     private final StringRedisTemplate redisTemplate;
+    private final Duration deadFriendUrlTtl;
+
+    public RedisCacheService(StringRedisTemplate redisTemplate,
+                             @Value("${app.cache.friend-url.negative-ttl:24h}") Duration deadFriendUrlTtl) {
+        this.redisTemplate = redisTemplate;
+        this.deadFriendUrlTtl = deadFriendUrlTtl;
+    }
 
-    public String getFriendUrlFromCache(String key) {
+    /**
+     * Reads the live entry and the dead marker for a friend code in one round trip.
+     * Returns {@link CachedFriendLink#dead()} for codes known to be expired or unknown.
+     */
+    public CachedFriendLink getFriendUrlFromCache(String key) {
         log.info("fetching cached friend url");
-        return redisTemplate.opsForValue().get(key);
+        List<String> values = redisTemplate.opsForValue()
+                .multiGet(List.of(key, DEAD_FRIEND_URL_PREFIX + key));
+        if (values == null) {
+            return null;
+        }
+        if (values.get(0) != null) {
+            return decodeFriendLink(values.get(0));
+        }
+        return values.get(1) != null ? CachedFriendLink.dead() : null;
+    }
+
+    /**
+     * Caches the object key and expiry of a friend link; urls are presigned on read.
+     */
+    public void createFriendUrl(String key, String sourceKey, long expiresAt) {
+        log.info("creating cache for friend code with source key");
+        long ttlMs = expiresAt - System.currentTimeMillis();
+        if (ttlMs <= 0) {
+            return;
+        }
+        redisTemplate.opsForValue().set(key, expiresAt + String.valueOf(EXPIRY_SEPARATOR) + sourceKey,
+                Duration.ofMillis(ttlMs));
+    }
+
+    /**
+     * Caches several friend links in one pipelined round trip.
+     */
+    public void createFriendUrls(Map<String, CachedFriendLink> links) {
+        long now = System.currentTimeMillis();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            links.forEach((key, link) -> {
+                long ttlMs = link.getExpiresAt() - now;
+                if (ttlMs <= 0) {
+                    return;
+                }
+                String value = link.getExpiresAt() + String.valueOf(EXPIRY_SEPARATOR) + link.getSourceKey();
+                connection.stringCommands().set(key.getBytes(StandardCharsets.UTF_8),
+                        value.getBytes(StandardCharsets.UTF_8),
+                        Expiration.milliseconds(ttlMs),
+                        RedisStringCommands.SetOption.upsert());
+            });
+            return null;
+        });
+    }
+
+    public void cacheDeadFriendUrl(String key) {
+        redisTemplate.opsForValue().set(DEAD_FRIEND_URL_PREFIX + key, "1", deadFriendUrlTtl);
     }
 
-    public void createFriendUrl(String key, String value) {
-        log.info("creating cache for friend code with source url");
-        redisTemplate.opsForValue().set(key, value,Duration.ofMinutes(60));
+    /**
+     * Drops the live entries, records the dead markers and notifies other
+     * instances, pipelined into a single round trip.
+     */
+    public void markFriendUrlsDead(Collection<String> keys) {
+        byte[] rawChannel = FRIEND_URL_DEACTIVATED_CHANNEL.getBytes(StandardCharsets.UTF_8);
+        byte[] marker = "1".getBytes(StandardCharsets.UTF_8);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+                byte[] rawDeadKey = (DEAD_FRIEND_URL_PREFIX + key).getBytes(StandardCharsets.UTF_8);
+                connection.keyCommands().del(rawKey);
+                connection.stringCommands().set(rawDeadKey, marker,
+                        Expiration.from(deadFriendUrlTtl),
+                        RedisStringCommands.SetOption.upsert());
+                connection.publish(rawChannel, rawKey);
+            }
+            return null;
+        });
     }
 
-    public Long createOrUpdateRateLimitKey(String key, int windowSeconds) {
-        String redisKey = "ratelimit:" + key;
+    public void savePendingUpload(String key, String value, Duration ttl) {
+        redisTemplate.opsForValue().set(PENDING_UPLOAD_PREFIX + key, value, ttl);
+    }
+
+    public String getPendingUpload(String key) {
+        return redisTemplate.opsForValue().get(PENDING_UPLOAD_PREFIX + key);
+    }
 
-        Long count = redisTemplate.opsForValue().increment(redisKey);
+    /**
+     * Reads and removes a pending upload atomically, so an upload can only be finalized once.
+     */
+    public String takePendingUpload(String key) {
+        return redisTemplate.opsForValue().getAndDelete(PENDING_UPLOAD_PREFIX + key);
+    }
 
-        if (count != null && count == 1) {
-            redisTemplate.expire(redisKey, Duration.ofSeconds(windowSeconds));
+    /**
+     * Records a revoked token id for ttl and notifies other instances, in one
+     * pipelined round trip.
+     */
+    public void revokeToken(String tokenId, Duration ttl) {
+        byte[] rawId = tokenId.getBytes(StandardCharsets.UTF_8);
+        byte[] rawKey = (REVOKED_TOKEN_PREFIX + tokenId).getBytes(StandardCharsets.UTF_8);
+        byte[] rawChannel = TOKEN_REVOKED_CHANNEL.getBytes(StandardCharsets.UTF_8);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.stringCommands().set(rawKey, "1".getBytes(StandardCharsets.UTF_8),
+                    Expiration.from(ttl), RedisStringCommands.SetOption.upsert());
+            connection.publish(rawChannel, rawId);
+            return null;
+        });
+    }
+
+    public boolean isTokenRevoked(String tokenId) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(REVOKED_TOKEN_PREFIX + tokenId));
+    }
+
+    /**
+     * Every currently revoked token id, read with SCAN so Redis is not blocked.
+     */
+    public List<String> revokedTokenIds() {
+        List<String> ids = new ArrayList<>();
+        ScanOptions options = ScanOptions.scanOptions().match(REVOKED_TOKEN_PREFIX + "*").count(1000).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            cursor.forEachRemaining(key -> ids.add(key.substring(REVOKED_TOKEN_PREFIX.length())));
+        }
+        return ids;
+    }
+
+    /**
+     * Runs the limiter script for the algorithm, which grants up to wanted
+     * requests and records them atomically, setting the key's expiry in the
+     * same call.
+     */
+    public RateLimitLease leaseRateLimit(String key, RateLimitAlgorithm algorithm, int limit, long windowMs,
+                                         int wanted) {
+        List<Long> result = switch (algorithm) {
+            case GCRA -> redisTemplate.execute(GCRA_SCRIPT,
+                    List.of(RATE_LIMIT_PREFIX + "gcra:" + key),
+                    String.valueOf(limit), String.valueOf(windowMs), String.valueOf(wanted));
+            case SLIDING_WINDOW -> redisTemplate.execute(SLIDING_WINDOW_SCRIPT,
+                    List.of(RATE_LIMIT_PREFIX + "sw:" + key),
+                    String.valueOf(limit), String.valueOf(windowMs), UUID.randomUUID().toString(),
+                    String.valueOf(wanted));
+        };
+        if (result == null || result.size() < 4) {
+            throw new IllegalStateException("Unexpected rate limit script result: " + result);
         }
-        return count;
+        return new RateLimitLease(result.get(0), result.get(1), result.get(2), result.get(3));
     }
 
-    public Long getTimeToReset(String key) {
-        Long ttl = redisTemplate.getExpire("ratelimit:" + key);
-        return ttl != null ? ttl : 0;
+    private CachedFriendLink decodeFriendLink(String cached) {
+        int separator = cached.indexOf(EXPIRY_SEPARATOR);
+        // entries written before keys were cached hold a full presigned url;
+        // treat them as a miss so the loader rewrites them in the compact form
+        if (separator <= 0 || cached.contains("://")) {
+            return null;
+        }
+        try {
+            long expiresAt = Long.parseLong(cached, 0, separator, 10);
+            return new CachedFriendLink(cached.substring(separator + 1), expiresAt);
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 }
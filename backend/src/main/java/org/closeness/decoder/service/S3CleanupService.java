@@ -1,29 +1,120 @@
 package org.closeness.decoder.service;
 
+import lombok.extern.slf4j.Slf4j;
+import org.closeness.decoder.dto.ExpiryStateStore;
+import org.closeness.decoder.repository.FileBlobRepository;
 import org.closeness.decoder.repository.FriendUrlRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
+@Slf4j
 public class S3CleanupService {
     private final FriendUrlRepository friendUrlRepository;
+    private final FileBlobRepository fileBlobRepository;
     private final S3Service s3Service;
+    private final RedisCacheService redisCacheService;
+    private final TransactionTemplate transactionTemplate;
+    private final int clickFlushChunkSize;
 
-    public S3CleanupService(FriendUrlRepository friendUrlRepository, S3Service s3Service) {
+    public S3CleanupService(FriendUrlRepository friendUrlRepository, FileBlobRepository fileBlobRepository,
+                            S3Service s3Service,
+                            RedisCacheService redisCacheService,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${app.streams.click-flush.chunk-size:1000}") int clickFlushChunkSize) {
         this.friendUrlRepository = friendUrlRepository;
+        this.fileBlobRepository = fileBlobRepository;
         this.s3Service = s3Service;
+        this.redisCacheService = redisCacheService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clickFlushChunkSize = clickFlushChunkSize;
     }
 
-    @Transactional
-    public void handleExpiry(String friendCode,String storageKey){
-        friendUrlRepository.updateActiveStatus(UUID.fromString(friendCode));
-        s3Service.deleteObject(storageKey);
+    /**
+     * Expires a batch of links: deactivates their rows and releases their blob
+     * references in one transaction, drops them from the caches, then
+     * bulk-deletes the objects no other link still points at. The transaction
+     * is committed before any storage call is made.
+     *
+     * @return friend codes whose object could not be deleted and should be retried
+     */
+    public Set<String> handleExpiryBatch(List<ExpiryStateStore> expired) {
+        List<UUID> ids = new ArrayList<>(expired.size());
+        List<String> friendCodes = new ArrayList<>(expired.size());
+        Map<String, List<String>> friendCodesByStorageKey = new HashMap<>();
+        for (ExpiryStateStore entry : expired) {
+            ids.add(UUID.fromString(entry.getFriendCode()));
+            friendCodes.add(entry.getFriendCode());
+            friendCodesByStorageKey
+                    .computeIfAbsent(entry.getStorageKey(), key -> new ArrayList<>())
+                    .add(entry.getFriendCode());
+        }
+
+        transactionTemplate.executeWithoutResult(status ->
+                fileBlobRepository.release(friendUrlRepository.deactivate(ids)));
+        redisCacheService.markFriendUrlsDead(friendCodes);
+
+        // computed from the blob table rather than the release above, so a retry
+        // still finds the objects whose delete failed last time
+        Set<String> deletable = fileBlobRepository.deletableKeys(friendCodesByStorageKey.keySet());
+        Set<String> failedKeys = s3Service.deleteObjects(deletable);
+        Set<String> deleted = new HashSet<>(deletable);
+        deleted.removeAll(failedKeys);
+        fileBlobRepository.forget(deleted);
+
+        Set<String> failedFriendCodes = new HashSet<>();
+        for (String failedKey : failedKeys) {
+            failedFriendCodes.addAll(friendCodesByStorageKey.getOrDefault(failedKey, List.of()));
+        }
+        log.info("Expired {} friend urls, deleted {} objects, {} pending object deletes",
+                expired.size(), deleted.size(), failedFriendCodes.size());
+        return failedFriendCodes;
+    }
+
+    /**
+     * Deletes the objects of up to limit released blobs or orphaned objects
+     * and forgets the ones that were deleted. Picks up deletes that failed
+     * after their links expired, whichever path expired them.
+     *
+     * @return the number of objects deleted
+     */
+    public int purgeReleasedBlobs(int limit) {
+        List<String> released = fileBlobRepository.releasedKeys(limit);
+        if (released.isEmpty()) {
+            return 0;
+        }
+        Set<String> failedKeys = s3Service.deleteObjects(released);
+        Set<String> deleted = new HashSet<>(released);
+        deleted.removeAll(failedKeys);
+        fileBlobRepository.forget(deleted);
+        return deleted.size();
     }
 
+    /**
+     * Applies a punctuation's worth of click deltas in one transaction,
+     * one set-based UPDATE per chunk of clickFlushChunkSize rows.
+     */
     @Transactional
-    public void flushClickCount(String friendCode, Long clicks) {
-        friendUrlRepository.incrementClickCount(UUID.fromString(friendCode),clicks);
+    public void flushClickCounts(Map<UUID, Long> clicksByFriendCode) {
+        Map<UUID, Long> chunk = new HashMap<>();
+        for (Map.Entry<UUID, Long> entry : clicksByFriendCode.entrySet()) {
+            chunk.put(entry.getKey(), entry.getValue());
+            if (chunk.size() >= clickFlushChunkSize) {
+                friendUrlRepository.incrementClickCounts(chunk);
+                chunk = new HashMap<>();
+            }
+        }
+        friendUrlRepository.incrementClickCounts(chunk);
     }
 }
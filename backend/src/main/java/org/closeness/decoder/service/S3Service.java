@@ -1,15 +1,26 @@
 package org.closeness.decoder.service;
 
+import org.closeness.decoder.dto.FinalizeUploadRequest;
 import org.closeness.decoder.dto.FriendMessageDto;
+import org.closeness.decoder.dto.UploadUrlRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 public interface S3Service {
     ResponseEntity<?> sendObject(MultipartFile file);
     ResponseEntity<?> getPreSignedUrl(String key);
     ResponseEntity<?> sendObjectAndGeneratePresignedUrl(MultipartFile file);
+    ResponseEntity<?> sendObjectsAndGeneratePresignedUrls(List<MultipartFile> files);
+    ResponseEntity<?> streamObjectAndGeneratePresignedUrl(InputStream body, String fileName, String contentType);
+    ResponseEntity<?> createUploadUrl(UploadUrlRequest request);
+    ResponseEntity<?> finalizeUpload(FinalizeUploadRequest request);
     ResponseEntity<FriendMessageDto> getFriendUrl(UUID friendCode);
     void deleteObject(String key);
+    Set<String> deleteObjects(Collection<String> keys);
 }
@@ -0,0 +1,26 @@
+package org.closeness.decoder.service.cache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FriendUrlDeactivationListener implements MessageListener {
+
+    private final FriendUrlNearCache friendUrlNearCache;
+    private final FriendUrlNegativeCache friendUrlNegativeCache;
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String friendCode = new String(message.getBody(), StandardCharsets.UTF_8);
+        friendUrlNearCache.invalidate(friendCode);
+        friendUrlNegativeCache.recordLocally(friendCode);
+        log.debug("Friend url invalidated from near cache: {}", friendCode);
+    }
+}
@@ -0,0 +1,79 @@
+package org.closeness.decoder.service.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.closeness.decoder.dto.CachedFriendLink;
+import org.closeness.decoder.model.FriendUrl;
+import org.closeness.decoder.repository.FriendUrlRepository;
+import org.closeness.decoder.service.RedisCacheService;
+import org.closeness.decoder.utils.DateTimeUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Loads friend links from Postgres on a cache miss. Concurrent misses for the
+ * same code share one query, and the winning load repopulates the caches once.
+ */
+@Component
+@Slf4j
+public class FriendUrlLoader {
+
+    private final FriendUrlRepository friendUrlRepository;
+    private final RedisCacheService redisCacheService;
+    private final FriendUrlNearCache friendUrlNearCache;
+    private final FriendUrlNegativeCache friendUrlNegativeCache;
+    private final SingleFlight<UUID, CachedFriendLink> singleFlight;
+    private final TransactionTemplate primaryReads;
+
+    public FriendUrlLoader(FriendUrlRepository friendUrlRepository,
+                           RedisCacheService redisCacheService,
+                           FriendUrlNearCache friendUrlNearCache,
+                           FriendUrlNegativeCache friendUrlNegativeCache,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${app.cache.friend-url.load-timeout:5s}") Duration loadTimeout) {
+        this.friendUrlRepository = friendUrlRepository;
+        this.redisCacheService = redisCacheService;
+        this.friendUrlNearCache = friendUrlNearCache;
+        this.friendUrlNegativeCache = friendUrlNegativeCache;
+        this.singleFlight = new SingleFlight<>(loadTimeout);
+        // read-write, so it is routed to the primary
+        this.primaryReads = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Returns the link for the code, or {@link CachedFriendLink#dead()} when it
+     * does not exist or is no longer active.
+     */
+    public CachedFriendLink load(UUID friendCode) {
+        return singleFlight.load(friendCode, () -> loadFromDatabase(friendCode));
+    }
+
+    private CachedFriendLink loadFromDatabase(UUID friendCode) {
+        String code = String.valueOf(friendCode);
+        Optional<FriendUrl> friendUrl = friendUrlRepository.findById(friendCode);
+        if (friendUrl.isEmpty()) {
+            // findById reads from a replica; a link created moments ago may not
+            // have reached it yet, and a dead marker would hide it for a day
+            friendUrl = primaryReads.execute(status -> friendUrlRepository.findById(friendCode));
+        }
+        if (friendUrl.isEmpty() || !friendUrl.get().getIsActive()) {
+            friendUrlNegativeCache.markDead(code);
+            return CachedFriendLink.dead();
+        }
+        CachedFriendLink link = new CachedFriendLink(
+                friendUrl.get().getSourceKey(),
+                DateTimeUtils.toEpochMilli(friendUrl.get().getExpiresAt()));
+        try {
+            redisCacheService.createFriendUrl(code, link.getSourceKey(), link.getExpiresAt());
+        } catch (Exception e) {
+            log.warn("Failed to repopulate friend url cache for {}: {}", code, e.getMessage());
+        }
+        friendUrlNearCache.put(code, link);
+        return link;
+    }
+}
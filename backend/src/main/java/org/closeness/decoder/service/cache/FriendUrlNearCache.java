@@ -0,0 +1,94 @@
+package org.closeness.decoder.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.closeness.decoder.dto.CachedFriendLink;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * On-heap L1 cache in front of Redis for friend code lookups.
+ * Caffeine's W-TinyLFU policy keeps viral links resident while one-off
+ * lookups are evicted first. Entries never outlive the link's expiry and
+ * are dropped across instances through {@link FriendUrlDeactivationListener}.
+ */
+@Component
+@Slf4j
+public class FriendUrlNearCache {
+
+    private final Cache<String, CachedFriendLink> cache;
+
+    public FriendUrlNearCache(
+            @Value("${app.cache.friend-url.maximum-size:10000}") long maximumSize,
+            @Value("${app.cache.friend-url.max-ttl:5m}") Duration maxTtl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new LinkExpiry(maxTtl.toNanos()))
+                .recordStats()
+                .build();
+    }
+
+    public CachedFriendLink get(String friendCode) {
+        return cache.getIfPresent(friendCode);
+    }
+
+    public void put(String friendCode, CachedFriendLink link) {
+        if (link.getExpiresAt() <= System.currentTimeMillis()) {
+            return;
+        }
+        cache.put(friendCode, link);
+    }
+
+    public void invalidate(String friendCode) {
+        cache.invalidate(friendCode);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Scheduled(fixedRateString = "${app.cache.friend-url.stats-log-interval-ms:300000}")
+    public void logStats() {
+        CacheStats stats = cache.stats();
+        log.info("Friend url near cache: size={} hits={} misses={} hitRate={} evictions={}",
+                cache.estimatedSize(),
+                stats.hitCount(),
+                stats.missCount(),
+                String.format("%.3f", stats.hitRate()),
+                stats.evictionCount());
+    }
+
+    private static final class LinkExpiry implements Expiry<String, CachedFriendLink> {
+
+        private final long maxTtlNanos;
+
+        private LinkExpiry(long maxTtlNanos) {
+            this.maxTtlNanos = maxTtlNanos;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, CachedFriendLink value, long currentTime) {
+            long remainingMs = value.getExpiresAt() - System.currentTimeMillis();
+            return Math.max(0, Math.min(maxTtlNanos, TimeUnit.MILLISECONDS.toNanos(remainingMs)));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, CachedFriendLink value,
+                                      long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, CachedFriendLink value,
+                                    long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
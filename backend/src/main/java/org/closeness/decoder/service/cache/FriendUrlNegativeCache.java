@@ -0,0 +1,46 @@
+package org.closeness.decoder.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.closeness.decoder.service.RedisCacheService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Records friend codes that are expired or never existed, so repeated
+ * lookups for them are answered without reaching Postgres. The local tier is
+ * an exact bounded set rather than a probabilistic filter: a false positive
+ * would hide a live link. Redis holds the shared tier.
+ */
+@Component
+public class FriendUrlNegativeCache {
+
+    private final Cache<String, Boolean> deadCodes;
+    private final RedisCacheService redisCacheService;
+
+    public FriendUrlNegativeCache(
+            RedisCacheService redisCacheService,
+            @Value("${app.cache.friend-url.negative-maximum-size:100000}") long maximumSize,
+            @Value("${app.cache.friend-url.negative-local-ttl:1h}") Duration localTtl) {
+        this.redisCacheService = redisCacheService;
+        this.deadCodes = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(localTtl)
+                .build();
+    }
+
+    public boolean isKnownDead(String friendCode) {
+        return deadCodes.getIfPresent(friendCode) != null;
+    }
+
+    public void recordLocally(String friendCode) {
+        deadCodes.put(friendCode, Boolean.TRUE);
+    }
+
+    public void markDead(String friendCode) {
+        recordLocally(friendCode);
+        redisCacheService.cacheDeadFriendUrl(friendCode);
+    }
+}
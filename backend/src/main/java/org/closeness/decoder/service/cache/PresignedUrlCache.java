@@ -0,0 +1,72 @@
+package org.closeness.decoder.service.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.closeness.decoder.configuration.S3Properties;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+
+import java.time.Duration;
+
+/**
+ * Presigned GET urls per object key, signed once and shared across clicks.
+ * Entries are re-signed in the background once they pass refresh-after and
+ * dropped at expire-after, so a served url always keeps at least
+ * signature-duration minus expire-after of validity.
+ */
+@Component
+public class PresignedUrlCache {
+
+    private final S3Presigner s3Presigner;
+    private final S3Properties s3Properties;
+    private final Duration signatureDuration;
+    private final LoadingCache<String, String> urls;
+
+    public PresignedUrlCache(
+            S3Presigner s3Presigner,
+            S3Properties s3Properties,
+            @Value("${app.presign.signature-duration:45m}") Duration signatureDuration,
+            @Value("${app.presign.refresh-after:15m}") Duration refreshAfter,
+            @Value("${app.presign.expire-after:30m}") Duration expireAfter,
+            @Value("${app.presign.maximum-size:10000}") long maximumSize) {
+        if (expireAfter.compareTo(signatureDuration) >= 0 || refreshAfter.compareTo(expireAfter) >= 0) {
+            throw new IllegalArgumentException(
+                    "app.presign requires refresh-after < expire-after < signature-duration");
+        }
+        this.s3Presigner = s3Presigner;
+        this.s3Properties = s3Properties;
+        this.signatureDuration = signatureDuration;
+        this.urls = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .refreshAfterWrite(refreshAfter)
+                .expireAfterWrite(expireAfter)
+                .build(this::presign);
+    }
+
+    public String get(String sourceKey) {
+        return urls.get(sourceKey);
+    }
+
+    public void invalidate(String sourceKey) {
+        urls.invalidate(sourceKey);
+    }
+
+    private String presign(String sourceKey) {
+        GetObjectRequest request =
+                GetObjectRequest.builder().
+                        bucket(s3Properties.getBucketName()).
+                        key(sourceKey).
+                        build();
+
+        GetObjectPresignRequest presignRequest =
+                GetObjectPresignRequest.builder().
+                        signatureDuration(signatureDuration).
+                        getObjectRequest(request).
+                        build();
+
+        return s3Presigner.presignGetObject(presignRequest).url().toString();
+    }
+}
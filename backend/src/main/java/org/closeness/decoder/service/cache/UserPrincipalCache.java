@@ -0,0 +1,55 @@
+package org.closeness.decoder.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.closeness.decoder.model.User;
+import org.closeness.decoder.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Users behind authenticated requests, so the JWT filter does not read the
+ * users table on every call. Entries live for a short TTL, which bounds how
+ * long a profile change made elsewhere or a deleted account goes unnoticed.
+ * Unknown ids are not cached.
+ */
+@Component
+public class UserPrincipalCache {
+
+    private final Cache<UUID, User> users;
+    private final UserRepository userRepository;
+    private final TransactionTemplate primaryReads;
+
+    public UserPrincipalCache(UserRepository userRepository,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.cache.user.maximum-size:10000}") long maximumSize,
+                              @Value("${app.cache.user.ttl:1m}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.primaryReads = new TransactionTemplate(transactionManager);
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public Optional<User> get(UUID id) {
+        return Optional.ofNullable(users.get(id, this::load));
+    }
+
+    public void invalidate(UUID id) {
+        users.invalidate(id);
+    }
+
+    // findById reads from a replica, which may not have a just-created user yet
+    private User load(UUID id) {
+        return userRepository.findById(id)
+                .or(() -> primaryReads.execute(status -> userRepository.findById(id)))
+                .orElse(null);
+    }
+}
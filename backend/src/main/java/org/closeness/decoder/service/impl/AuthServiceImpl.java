@@ -1,22 +1,20 @@
 package org.closeness.decoder.service.impl;
 
-import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
-import com.google.api.client.googleapis.auth.oauth2.GoogleIdTokenVerifier;
-import com.google.api.client.http.javanet.NetHttpTransport;
-import com.google.api.client.json.gson.GsonFactory;
+import io.jsonwebtoken.Claims;
 import lombok.extern.slf4j.Slf4j;
 import org.closeness.decoder.dto.AuthResponse;
 import org.closeness.decoder.dto.UserDto;
 import org.closeness.decoder.exception.AuthException;
 import org.closeness.decoder.model.User;
 import org.closeness.decoder.repository.UserRepository;
+import org.closeness.decoder.repository.UserRepositoryCustom;
+import org.closeness.decoder.security.GoogleIdTokenValidator;
 import org.closeness.decoder.security.JwtTokenProvider;
+import org.closeness.decoder.security.TokenRevocationService;
 import org.closeness.decoder.service.AuthService;
-import org.springframework.beans.factory.annotation.Value;
+import org.closeness.decoder.service.cache.UserPrincipalCache;
 import org.springframework.stereotype.Service;
 
-import java.util.Collections;
-
 import org.springframework.transaction.annotation.Transactional;
 
 @Service
@@ -24,46 +22,37 @@ import org.springframework.transaction.annotation.Transactional;
 public class AuthServiceImpl implements AuthService {
 
     private final UserRepository userRepository;
-    private final GoogleIdTokenVerifier verifier;
+    private final GoogleIdTokenValidator googleIdTokenValidator;
     private final JwtTokenProvider jwtTokenProvider;
+    private final UserPrincipalCache userPrincipalCache;
+    private final TokenRevocationService tokenRevocationService;
 
     public AuthServiceImpl(
             UserRepository userRepository,
-            @Value("${google.client-id}") String googleClientId,
-            JwtTokenProvider jwtTokenProvider
+            GoogleIdTokenValidator googleIdTokenValidator,
+            JwtTokenProvider jwtTokenProvider,
+            UserPrincipalCache userPrincipalCache,
+            TokenRevocationService tokenRevocationService
     ) {
         this.userRepository = userRepository;
-        this.verifier = new GoogleIdTokenVerifier.Builder(
-                new NetHttpTransport(),
-                GsonFactory.getDefaultInstance()
-        )
-                .setAudience(Collections.singletonList(googleClientId))
-                .build();
+        this.googleIdTokenValidator = googleIdTokenValidator;
         this.jwtTokenProvider = jwtTokenProvider;
+        this.userPrincipalCache = userPrincipalCache;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     @Override
     public AuthResponse signUp(String googleCredential) {
-        GoogleIdToken.Payload payload = verifyGoogleToken(googleCredential);
+        Claims payload = verifyGoogleToken(googleCredential);
 
         String googleId = payload.getSubject();
-        String email = payload.getEmail();
-        String name = (String) payload.get("name");
-        String picture = (String) payload.get("picture");
-
-        // Check if user already exists
-        if (userRepository.existsByGoogleId(googleId) || userRepository.existsByEmail(email)) {
-            throw new AuthException("User already exists. Please sign in instead.");
-        }
+        String email = payload.get("email", String.class);
+        String name = payload.get("name", String.class);
+        String picture = payload.get("picture", String.class);
 
-        // Create new user
-        User user = new User();
-        user.setGoogleId(googleId);
-        user.setEmail(email);
-        user.setUserName(name);
-        user.setProfilePicture(picture);
-
-        User savedUser = userRepository.save(user);
+        // one statement, so a concurrent sign-up for the same account cannot also insert
+        User savedUser = userRepository.insertIfAbsent(googleId, email, name, picture)
+                .orElseThrow(() -> new AuthException("User already exists. Please sign in instead."));
         log.info("New user signed up: {}", email);
 
         String accessToken = jwtTokenProvider.generateToken(savedUser);
@@ -73,36 +62,19 @@ public class AuthServiceImpl implements AuthService {
 
     @Override
     public AuthResponse signIn(String googleCredential) {
-        GoogleIdToken.Payload payload = verifyGoogleToken(googleCredential);
+        Claims payload = verifyGoogleToken(googleCredential);
 
         String googleId = payload.getSubject();
-        String email = payload.getEmail();
+        String email = payload.get("email", String.class);
+        String name = payload.get("name", String.class);
+        String picture = payload.get("picture", String.class);
 
-        // Find existing user
-        User user = userRepository.findByGoogleId(googleId)
-                .or(() -> userRepository.findByEmail(email))
+        // finds the user and applies profile changes in one round trip
+        UserRepositoryCustom.SignedInUser signedIn = userRepository.refreshOnSignIn(googleId, email, name, picture)
                 .orElseThrow(() -> new AuthException("User not found. Please sign up first."));
-
-        // Update user info if changed
-        String name = (String) payload.get("name");
-        String picture = (String) payload.get("picture");
-
-        boolean updated = false;
-        if (name != null && !name.equals(user.getUserName())) {
-            user.setUserName(name);
-            updated = true;
-        }
-        if (picture != null && !picture.equals(user.getProfilePicture())) {
-            user.setProfilePicture(picture);
-            updated = true;
-        }
-        if (user.getGoogleId() == null) {
-            user.setGoogleId(googleId);
-            updated = true;
-        }
-
-        if (updated) {
-            user = userRepository.save(user);
+        User user = signedIn.user();
+        if (signedIn.updated()) {
+            userPrincipalCache.invalidate(user.getId());
         }
 
         log.info("User signed in: {}", email);
@@ -111,13 +83,21 @@ public class AuthServiceImpl implements AuthService {
         return buildAuthResponse(user, accessToken);
     }
 
-    private GoogleIdToken.Payload verifyGoogleToken(String credential) {
+    @Override
+    public void logout(String accessToken) {
+        if (accessToken == null) {
+            return;
+        }
+        Claims claims = jwtTokenProvider.verify(accessToken);
+        if (claims != null && claims.getId() != null) {
+            tokenRevocationService.revoke(claims.getId(), claims.getExpiration());
+            log.info("Revoked token for userId: {}", claims.getSubject());
+        }
+    }
+
+    private Claims verifyGoogleToken(String credential) {
         try {
-            GoogleIdToken idToken = verifier.verify(credential);
-            if (idToken == null) {
-                throw new AuthException("Invalid Google token");
-            }
-            return idToken.getPayload();
+            return googleIdTokenValidator.verify(credential);
         } catch (Exception e) {
             log.error("Error verifying Google token", e);
             throw new AuthException("Failed to verify Google token: " + e.getMessage());
@@ -1,59 +1,120 @@
 package org.closeness.decoder.service.impl;
 
 import lombok.extern.slf4j.Slf4j;
+import org.closeness.decoder.configuration.ExecutorConfig;
 import org.closeness.decoder.configuration.S3Properties;
+import org.closeness.decoder.dto.CachedFriendLink;
+import org.closeness.decoder.dto.FileUploadResultDto;
+import org.closeness.decoder.dto.FinalizeUploadRequest;
 import org.closeness.decoder.dto.FriendLinkDto;
 import org.closeness.decoder.dto.FriendMessageDto;
+import org.closeness.decoder.dto.FriendUploadEvent;
+import org.closeness.decoder.dto.UploadUrlRequest;
+import org.closeness.decoder.dto.UploadUrlResponse;
 import org.closeness.decoder.model.FriendUrl;
+import org.closeness.decoder.repository.FileBlobRepository;
 import org.closeness.decoder.repository.FriendUrlRepository;
+import org.closeness.decoder.repository.UploadEventOutboxRepository;
+import org.closeness.decoder.service.ClickCountAggregator;
 import org.closeness.decoder.service.RedisCacheService;
-import org.closeness.decoder.service.KafkaProducer;
 import org.closeness.decoder.service.S3Service;
+import org.closeness.decoder.service.cache.FriendUrlLoader;
+import org.closeness.decoder.service.cache.FriendUrlNearCache;
+import org.closeness.decoder.service.cache.FriendUrlNegativeCache;
+import org.closeness.decoder.service.cache.PresignedUrlCache;
+import org.closeness.decoder.service.upload.MultipartUploadEngine;
+import org.closeness.decoder.service.upload.PresignedUploadService;
+import org.closeness.decoder.service.upload.UploadedObject;
 import org.closeness.decoder.utils.AuthUtils;
+import org.closeness.decoder.utils.CONSTANTS;
+import org.closeness.decoder.utils.DateTimeUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartFile;
-import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.Delete;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-import software.amazon.awssdk.services.s3.presigner.S3Presigner;
-import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 
-import java.time.Duration;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-import java.util.Optional;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 @Service
 @Slf4j
 public class S3ServiceImpl implements S3Service {
 
+    private static final int MAX_KEYS_PER_DELETE = 1000;
+
     private final S3Client s3Client;
-    private final S3Presigner s3Presigner;
     private final S3Properties s3Properties;
     private final FriendUrlRepository friendUrlRepository;
     private final AuthUtils authUtils;
     private final RedisCacheService redisCacheService;
-    private final KafkaProducer kafkaProducer;
+    private final UploadEventOutboxRepository uploadEventOutboxRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final FriendUrlNearCache friendUrlNearCache;
+    private final FriendUrlNegativeCache friendUrlNegativeCache;
+    private final FriendUrlLoader friendUrlLoader;
+    private final PresignedUrlCache presignedUrlCache;
+    private final ClickCountAggregator clickCountAggregator;
+    private final MultipartUploadEngine multipartUploadEngine;
+    private final PresignedUploadService presignedUploadService;
+    private final FileBlobRepository fileBlobRepository;
+    private final Executor fileUploadExecutor;
+    private final int maxFilesPerUpload;
 
-    public S3ServiceImpl(S3Client s3Client, S3Presigner s3Presigner, S3Properties s3Properties, FriendUrlRepository friendUrlRepository, AuthUtils authUtils, RedisCacheService redisCacheService, KafkaProducer kafkaProducer) {
+    public S3ServiceImpl(S3Client s3Client, S3Properties s3Properties, FriendUrlRepository friendUrlRepository, AuthUtils authUtils, RedisCacheService redisCacheService, UploadEventOutboxRepository uploadEventOutboxRepository, PlatformTransactionManager transactionManager, FriendUrlNearCache friendUrlNearCache, FriendUrlNegativeCache friendUrlNegativeCache, FriendUrlLoader friendUrlLoader, PresignedUrlCache presignedUrlCache, ClickCountAggregator clickCountAggregator, MultipartUploadEngine multipartUploadEngine,
+                         PresignedUploadService presignedUploadService,
+                         FileBlobRepository fileBlobRepository,
+                         @Qualifier(ExecutorConfig.FILE_UPLOAD_EXECUTOR) Executor fileUploadExecutor,
+                         @Value("${app.upload.max-files:20}") int maxFilesPerUpload) {
         this.s3Client = s3Client;
-        this.s3Presigner = s3Presigner;
         this.s3Properties = s3Properties;
-        this.kafkaProducer = kafkaProducer;
+        this.uploadEventOutboxRepository = uploadEventOutboxRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
         this.friendUrlRepository = friendUrlRepository;
         this.authUtils = authUtils;
         this.redisCacheService = redisCacheService;
+        this.friendUrlNearCache = friendUrlNearCache;
+        this.friendUrlNegativeCache = friendUrlNegativeCache;
+        this.friendUrlLoader = friendUrlLoader;
+        this.presignedUrlCache = presignedUrlCache;
+        this.clickCountAggregator = clickCountAggregator;
+        this.multipartUploadEngine = multipartUploadEngine;
+        this.presignedUploadService = presignedUploadService;
+        this.fileBlobRepository = fileBlobRepository;
+        this.fileUploadExecutor = fileUploadExecutor;
+        this.maxFilesPerUpload = maxFilesPerUpload;
     }
 
     @Override
     public ResponseEntity<?> sendObject(MultipartFile file) {
-        String key = createS3FileKey(file);
+        String key = createS3FileKey(file.getOriginalFilename());
 
         try {
             uploadObject(file, key);
@@ -66,20 +127,7 @@ public class S3ServiceImpl implements S3Service {
 
     @Override
     public ResponseEntity<?> getPreSignedUrl(String key) {
-        GetObjectRequest request =
-                GetObjectRequest.builder().
-                        bucket(s3Properties.getBucketName()).
-                        key(key).
-                        build();
-
-        GetObjectPresignRequest presignRequest =
-                GetObjectPresignRequest.builder().
-                        signatureDuration(Duration.ofMinutes(45)).
-                        getObjectRequest(request).
-                        build();
-
-        String preSignedUrl =
-                s3Presigner.presignGetObject(presignRequest).url().toString();
+        String preSignedUrl = presignedUrlCache.get(key);
         return new ResponseEntity<>(preSignedUrl, HttpStatus.OK);
     }
 
@@ -93,37 +141,11 @@ public class S3ServiceImpl implements S3Service {
             return new ResponseEntity<>("Only PDF file format is supported", HttpStatus.BAD_REQUEST);
         }
 
-        String key = createS3FileKey(file);
-        ResponseEntity<?> response;
-        try {
-            uploadObject(file, key);
-            log.info("File uploaded to S3");
-            response = getPreSignedUrl(key);
-            LocalDateTime now = LocalDateTime.now();
-            long createdAt = System.currentTimeMillis();
-            long expiresAt = createdAt + (1 * 60 * 1000L);
-            log.info("Presigned url generated");
-            String sourceUrl = response.getBody().toString();
-            UUID userId = authUtils.getCurrentUserId();
-            FriendUrl friendUrl =
-                    FriendUrl.builder().
-                            userId(userId).
-                            sourceUrl(sourceUrl).
-                            sourceKey(key).
-                            expiryTimeMinutes(60).
-                            createdAt(now).
-                            expiresAt(now.plusMinutes(60)).
-                            isActive(true).
-                            build();
-            friendUrl = friendUrlRepository.save(friendUrl);
-            UUID friendCode = friendUrl.getId();
-            redisCacheService.
-                    createFriendUrl(String.valueOf(friendCode), sourceUrl);
-            kafkaProducer.
-                    publishUploadEvent(
-                            String.valueOf(friendCode), key, createdAt, expiresAt);
-            FriendLinkDto friendLinkDto = new FriendLinkDto(friendCode);
-            return new ResponseEntity<>(friendLinkDto, HttpStatus.OK);
+        String key = createS3FileKey(file.getOriginalFilename());
+        try (InputStream in = file.getInputStream()) {
+            UploadedObject stored = storeDeduplicated(in, key, file.getContentType());
+            log.info(stored.reused() ? "Reused stored file" : "File uploaded to S3");
+            return new ResponseEntity<>(createFriendLink(stored.key()), HttpStatus.OK);
         } catch (Exception e) {
             e.printStackTrace();
             log.error(e.getMessage());
@@ -131,33 +153,268 @@ public class S3ServiceImpl implements S3Service {
         }
     }
 
+    @Override
+    public ResponseEntity<?> streamObjectAndGeneratePresignedUrl(InputStream body, String fileName,
+                                                                 String contentType) {
+        if (!"application/pdf".equalsIgnoreCase(contentType)) {
+            return new ResponseEntity<>("Only PDF file format is supported", HttpStatus.BAD_REQUEST);
+        }
+
+        String key = createS3FileKey(fileName);
+        try {
+            UploadedObject stored = storeDeduplicated(body, key, contentType);
+            if (stored.size() == 0) {
+                deleteObject(key);
+                return new ResponseEntity<>("File is not present", HttpStatus.BAD_REQUEST);
+            }
+            log.info("File streamed to S3 ({} bytes, reused={})", stored.size(), stored.reused());
+            return new ResponseEntity<>(createFriendLink(stored.key()), HttpStatus.OK);
+        } catch (MaxUploadSizeExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error(e.getMessage());
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @Override
+    public ResponseEntity<?> createUploadUrl(UploadUrlRequest request) {
+        if (!"application/pdf".equalsIgnoreCase(request.getContentType())) {
+            return new ResponseEntity<>("Only PDF file format is supported", HttpStatus.BAD_REQUEST);
+        }
+        String key = createS3FileKey(request.getFileName());
+        UploadUrlResponse response = presignedUploadService.createUploadUrl(
+                key, request.getContentType(), request.getContentLength(), authUtils.getCurrentUserId());
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    @Override
+    public ResponseEntity<?> finalizeUpload(FinalizeUploadRequest request) {
+        if (request.getKey() == null || request.getKey().isBlank()) {
+            return new ResponseEntity<>("Upload key is required", HttpStatus.BAD_REQUEST);
+        }
+        presignedUploadService.finalizeUpload(request.getKey(), authUtils.getCurrentUserId());
+        log.info("Direct upload finalized");
+        return new ResponseEntity<>(createFriendLink(request.getKey()), HttpStatus.OK);
+    }
+
+    /**
+     * Uploads the files in parallel, at most app.upload.max-concurrent-files at a
+     * time across all requests, then creates the links for the stored ones with
+     * one batch insert, one Redis pipeline and one burst of upload events.
+     * A file that fails is reported in its result and does not affect the others.
+     */
+    @Override
+    public ResponseEntity<?> sendObjectsAndGeneratePresignedUrls(List<MultipartFile> files) {
+        if (files.size() > maxFilesPerUpload) {
+            return new ResponseEntity<>("At most " + maxFilesPerUpload + " files can be uploaded at once",
+                    HttpStatus.BAD_REQUEST);
+        }
+        FileUploadResultDto[] results = new FileUploadResultDto[files.size()];
+        String[] keys = new String[files.size()];
+        List<CompletableFuture<UploadedObject>> uploads = new ArrayList<>(Collections.nCopies(files.size(), null));
+        for (int i = 0; i < files.size(); i++) {
+            MultipartFile file = files.get(i);
+            if (file.isEmpty()) {
+                results[i] = FileUploadResultDto.failure(file.getOriginalFilename(), "File is not present");
+            } else if (!"application/pdf".equalsIgnoreCase(file.getContentType())) {
+                results[i] = FileUploadResultDto.failure(file.getOriginalFilename(),
+                        "Only PDF file format is supported");
+            } else {
+                String key = createS3FileKey(file.getOriginalFilename());
+                try {
+                    uploads.set(i, CompletableFuture.supplyAsync(() -> {
+                        try (InputStream in = file.getInputStream()) {
+                            return storeDeduplicated(in, key, file.getContentType());
+                        } catch (Exception e) {
+                            throw new CompletionException(e);
+                        }
+                    }, fileUploadExecutor));
+                } catch (RejectedExecutionException e) {
+                    results[i] = FileUploadResultDto.failure(file.getOriginalFilename(),
+                            "Upload capacity exceeded, try again later");
+                }
+            }
+        }
+
+        List<Integer> stored = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            if (uploads.get(i) == null) {
+                continue;
+            }
+            try {
+                keys[i] = uploads.get(i).join().key();
+                stored.add(i);
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                log.error("Upload of {} failed: {}", files.get(i).getOriginalFilename(), cause.getMessage());
+                results[i] = FileUploadResultDto.failure(files.get(i).getOriginalFilename(), "Upload failed");
+            }
+        }
+        if (!stored.isEmpty()) {
+            createFriendLinks(files, keys, stored, results);
+        }
+        return new ResponseEntity<>(Arrays.asList(results), HttpStatus.OK);
+    }
+
+    private void createFriendLinks(List<MultipartFile> files, String[] keys, List<Integer> stored,
+                                   FileUploadResultDto[] results) {
+        Instant createdAt = Instant.now();
+        Instant expiresAt = createdAt.plus(CONSTANTS.FRIEND_URL_EXPIRY_MINUTES, ChronoUnit.MINUTES);
+        UUID userId = authUtils.getCurrentUserId();
+        List<FriendUrl> friendUrls = new ArrayList<>(stored.size());
+        for (int i : stored) {
+            friendUrls.add(buildFriendUrl(userId, keys[i], createdAt, expiresAt));
+        }
+        try {
+            friendUrls = saveFriendUrls(friendUrls);
+        } catch (Exception e) {
+            log.error("Saving {} friend urls failed: {}", friendUrls.size(), e.getMessage());
+            releaseObjects(stored.stream().map(i -> keys[i]).toList());
+            for (int i : stored) {
+                results[i] = FileUploadResultDto.failure(files.get(i).getOriginalFilename(), "Upload failed");
+            }
+            return;
+        }
+
+        Map<String, CachedFriendLink> cachedLinks = new HashMap<>();
+        for (int n = 0; n < stored.size(); n++) {
+            int i = stored.get(n);
+            String friendCode = String.valueOf(friendUrls.get(n).getId());
+            cachedLinks.put(friendCode, new CachedFriendLink(keys[i], expiresAt.toEpochMilli()));
+            results[i] = FileUploadResultDto.success(files.get(i).getOriginalFilename(),
+                    friendUrls.get(n).getId());
+        }
+        // the loader repopulates Redis on a miss, so a failed pipeline only costs a DB read later
+        try {
+            redisCacheService.createFriendUrls(cachedLinks);
+        } catch (Exception e) {
+            log.warn("Caching {} friend urls failed: {}", cachedLinks.size(), e.getMessage());
+        }
+    }
+
+    private FriendLinkDto createFriendLink(String key) {
+        Instant createdAt = Instant.now();
+        Instant expiresAt = createdAt.plus(CONSTANTS.FRIEND_URL_EXPIRY_MINUTES, ChronoUnit.MINUTES);
+        UUID userId = authUtils.getCurrentUserId();
+        FriendUrl friendUrl;
+        try {
+            friendUrl = saveFriendUrls(List.of(buildFriendUrl(userId, key, createdAt, expiresAt))).get(0);
+        } catch (RuntimeException e) {
+            releaseObjects(List.of(key));
+            throw e;
+        }
+        UUID friendCode = friendUrl.getId();
+        try {
+            redisCacheService.
+                    createFriendUrl(String.valueOf(friendCode), key, expiresAt.toEpochMilli());
+        } catch (Exception e) {
+            log.warn("Caching friend url failed: {}", e.getMessage());
+        }
+        return new FriendLinkDto(friendCode);
+    }
+
+    // rows and their upload events commit together; UploadEventOutboxRelay publishes the events
+    private List<FriendUrl> saveFriendUrls(List<FriendUrl> friendUrls) {
+        return transactionTemplate.execute(status -> {
+            List<FriendUrl> saved = friendUrlRepository.saveAll(friendUrls);
+            uploadEventOutboxRepository.enqueue(saved.stream()
+                    .map(friendUrl -> new FriendUploadEvent(
+                            String.valueOf(friendUrl.getId()),
+                            friendUrl.getSourceKey(),
+                            DateTimeUtils.toEpochMilli(friendUrl.getCreatedAt()),
+                            DateTimeUtils.toEpochMilli(friendUrl.getExpiresAt())))
+                    .toList());
+            return saved;
+        });
+    }
+
+    /**
+     * Stores the body unless a live object with the same content exists, and
+     * takes a blob reference on behalf of the link about to be created.
+     * The returned key is the one the link must point at.
+     */
+    private UploadedObject storeDeduplicated(InputStream in, String key, String contentType) throws IOException {
+        UploadedObject uploaded =
+                multipartUploadEngine.upload(in, key, contentType, fileBlobRepository::acquireExisting);
+        if (uploaded.reused() || uploaded.size() == 0) {
+            return uploaded;
+        }
+        String linkedKey = fileBlobRepository.register(uploaded.digest(), key, uploaded.size());
+        if (linkedKey.equals(key)) {
+            return uploaded;
+        }
+        // the same content was stored concurrently; keep the registered copy
+        try {
+            deleteObject(key);
+        } catch (Exception e) {
+            log.warn("Failed to delete duplicate object {}, leaving it to the purge: {}", key, e.getMessage());
+            fileBlobRepository.recordOrphan(key);
+        }
+        return new UploadedObject(linkedKey, uploaded.size(), uploaded.digest(), true);
+    }
+
+    // gives back the references taken for links that were never created
+    private void releaseObjects(List<String> keys) {
+        try {
+            fileBlobRepository.release(keys);
+            Set<String> deletable = fileBlobRepository.deletableKeys(keys);
+            Set<String> deleted = new HashSet<>(deletable);
+            deleted.removeAll(deleteObjects(deletable));
+            fileBlobRepository.forget(deleted);
+        } catch (Exception e) {
+            log.error("Failed to release {} objects: {}", keys.size(), e.getMessage());
+        }
+    }
+
+    private FriendUrl buildFriendUrl(UUID userId, String key, Instant createdAt, Instant expiresAt) {
+        String sourceUrl = presignedUrlCache.get(key);
+        return FriendUrl.builder().
+                userId(userId).
+                sourceUrl(sourceUrl).
+                sourceKey(key).
+                expiryTimeMinutes(CONSTANTS.FRIEND_URL_EXPIRY_MINUTES).
+                createdAt(DateTimeUtils.toLocalDateTime(createdAt)).
+                expiresAt(DateTimeUtils.toLocalDateTime(expiresAt)).
+                isActive(true).
+                build();
+    }
+
     @Override
     public ResponseEntity<FriendMessageDto> getFriendUrl(UUID friendCode) {
-        long clickedAt = LocalDateTime.now()
-                .toInstant(ZoneOffset.UTC)
-                .toEpochMilli();
-        String sourceUrlFromCache
-                = redisCacheService.getFriendUrlFromCache(String.valueOf(friendCode));
-        if (sourceUrlFromCache != null) {
-            kafkaProducer.
-                    publishClickEvent(String.valueOf(friendCode), clickedAt);
-            FriendMessageDto friendMessageDto =
-                    new FriendMessageDto("Success", sourceUrlFromCache);
-            return new ResponseEntity<FriendMessageDto>(friendMessageDto, HttpStatus.OK);
-        }
-        Optional<FriendUrl> friendUrl = friendUrlRepository.findById(friendCode);
-        if (friendUrl.isEmpty() || !friendUrl.get().getIsActive()) {
-            FriendMessageDto friendMessageDto =
-                    new FriendMessageDto("Failed", null);
-            return new ResponseEntity<>(friendMessageDto, HttpStatus.ACCEPTED);
-        }
-        kafkaProducer.
-                publishClickEvent(String.valueOf(friendCode), clickedAt);
+        String code = String.valueOf(friendCode);
+        if (friendUrlNegativeCache.isKnownDead(code)) {
+            return failedFriendUrlResponse();
+        }
+        CachedFriendLink cachedLink = friendUrlNearCache.get(code);
+        if (cachedLink == null) {
+            cachedLink = redisCacheService.getFriendUrlFromCache(code);
+            if (cachedLink != null && cachedLink.isDead()) {
+                friendUrlNegativeCache.recordLocally(code);
+                return failedFriendUrlResponse();
+            }
+            if (cachedLink != null) {
+                friendUrlNearCache.put(code, cachedLink);
+            }
+        }
+        if (cachedLink == null) {
+            cachedLink = friendUrlLoader.load(friendCode);
+            if (cachedLink.isDead()) {
+                return failedFriendUrlResponse();
+            }
+        }
+        clickCountAggregator.recordClick(code);
         FriendMessageDto friendMessageDto =
-                new FriendMessageDto("Success", friendUrl.get().getSourceUrl());
+                new FriendMessageDto("Success", presignedUrlCache.get(cachedLink.getSourceKey()));
         return new ResponseEntity<FriendMessageDto>(friendMessageDto, HttpStatus.OK);
     }
 
+    private ResponseEntity<FriendMessageDto> failedFriendUrlResponse() {
+        FriendMessageDto friendMessageDto =
+                new FriendMessageDto("Failed", null);
+        return new ResponseEntity<>(friendMessageDto, HttpStatus.ACCEPTED);
+    }
+
     @Override
     public void deleteObject(String key) {
         s3Client.deleteObject(DeleteObjectRequest.builder()
@@ -166,20 +423,43 @@ public class S3ServiceImpl implements S3Service {
                 .build());
     }
 
-    public void uploadObject(MultipartFile file, String key) throws Exception {
-        PutObjectRequest request =
-                PutObjectRequest.builder()
+    /**
+     * Deletes keys through multi-object delete, up to 1000 keys per call.
+     * Returns the keys that could not be deleted.
+     */
+    @Override
+    public Set<String> deleteObjects(Collection<String> keys) {
+        Set<String> failedKeys = new HashSet<>();
+        List<String> pending = new ArrayList<>(keys);
+        for (int from = 0; from < pending.size(); from += MAX_KEYS_PER_DELETE) {
+            List<String> chunk = pending.subList(from, Math.min(from + MAX_KEYS_PER_DELETE, pending.size()));
+            List<ObjectIdentifier> objects = chunk.stream()
+                    .map(key -> ObjectIdentifier.builder().key(key).build())
+                    .toList();
+            try {
+                DeleteObjectsResponse response = s3Client.deleteObjects(DeleteObjectsRequest.builder()
                         .bucket(s3Properties.getBucketName())
-                        .key(key)
-                        .contentType(file.getContentType())
-                        .build();
-        s3Client.putObject(request,
-                RequestBody.fromInputStream(
-                        file.getInputStream(), file.getSize()));
+                        .delete(Delete.builder().objects(objects).quiet(true).build())
+                        .build());
+                response.errors().forEach(error -> {
+                    log.error("Failed to delete {}: {} {}", error.key(), error.code(), error.message());
+                    failedKeys.add(error.key());
+                });
+            } catch (Exception e) {
+                log.error("Bulk delete of {} objects failed: {}", chunk.size(), e.getMessage());
+                failedKeys.addAll(chunk);
+            }
+        }
+        return failedKeys;
+    }
+
+    public void uploadObject(MultipartFile file, String key) throws Exception {
+        try (InputStream in = file.getInputStream()) {
+            multipartUploadEngine.upload(in, key, file.getContentType());
+        }
     }
 
-    public String createS3FileKey(MultipartFile file) {
-        String originalFilename = file.getOriginalFilename();
+    public String createS3FileKey(String originalFilename) {
         String extension = ".pdf"; // default
         if (originalFilename != null && originalFilename.contains(".")) {
             extension = originalFilename.substring(originalFilename.lastIndexOf("."));
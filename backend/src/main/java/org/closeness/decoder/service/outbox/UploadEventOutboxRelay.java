@@ -0,0 +1,99 @@
+package org.closeness.decoder.service.outbox;
+
+import lombok.extern.slf4j.Slf4j;
+import org.closeness.decoder.dto.FriendUploadEvent;
+import org.closeness.decoder.repository.UploadEventOutboxRepository;
+import org.closeness.decoder.repository.UploadEventOutboxRepository.Backlog;
+import org.closeness.decoder.repository.UploadEventOutboxRepository.OutboxEvent;
+import org.closeness.decoder.service.KafkaProducer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drains the upload event outbox to Kafka. Each batch is locked, sent, and
+ * deleted only after every record is acknowledged, all in one transaction;
+ * a failed send rolls back and the batch is picked up again. Delivery is at
+ * least once, which the expiry store tolerates since its key is derived from
+ * the event itself.
+ */
+@Component
+@Slf4j
+public class UploadEventOutboxRelay {
+
+    private final UploadEventOutboxRepository outboxRepository;
+    private final KafkaProducer kafkaProducer;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final Duration sendTimeout;
+    private final long lagWarnMs;
+
+    public UploadEventOutboxRelay(UploadEventOutboxRepository outboxRepository,
+                                  KafkaProducer kafkaProducer,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${app.outbox.batch-size:500}") int batchSize,
+                                  @Value("${app.outbox.max-batches-per-run:20}") int maxBatchesPerRun,
+                                  @Value("${app.outbox.send-timeout:30s}") Duration sendTimeout,
+                                  @Value("${app.outbox.lag-warn-ms:60000}") long lagWarnMs) {
+        this.outboxRepository = outboxRepository;
+        this.kafkaProducer = kafkaProducer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.sendTimeout = sendTimeout;
+        this.lagWarnMs = lagWarnMs;
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms:500}")
+    public void relay() {
+        try {
+            for (int i = 0; i < maxBatchesPerRun; i++) {
+                Integer relayed = transactionTemplate.execute(status -> relayBatch());
+                if (relayed == null || relayed < batchSize) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Relaying upload events failed, retrying next run: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedRateString = "${app.outbox.stats-log-interval-ms:60000}")
+    public void logLag() {
+        Backlog backlog = outboxRepository.backlog();
+        if (backlog.lagMs() > lagWarnMs) {
+            log.warn("Upload event outbox is behind: size={} lagMs={}", backlog.size(), backlog.lagMs());
+        } else {
+            log.info("Upload event outbox: size={} lagMs={}", backlog.size(), backlog.lagMs());
+        }
+    }
+
+    private int relayBatch() {
+        List<OutboxEvent> batch = outboxRepository.lockBatch(batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        List<FriendUploadEvent> events = batch.stream().map(OutboxEvent::event).toList();
+        try {
+            kafkaProducer.sendUploadEvents(events)
+                    .get(sendTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while relaying upload events", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Upload events were not acknowledged", e);
+        }
+        outboxRepository.delete(batch.stream().map(OutboxEvent::id).toList());
+        log.debug("Relayed {} upload events", batch.size());
+        return batch.size();
+    }
+}
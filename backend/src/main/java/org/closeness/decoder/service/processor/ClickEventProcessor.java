@@ -1,6 +1,7 @@
 package org.closeness.decoder.service.processor;
 
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.utils.Bytes;
 import org.apache.kafka.streams.processor.PunctuationType;
 import org.apache.kafka.streams.processor.api.Processor;
 import org.apache.kafka.streams.processor.api.ProcessorContext;
@@ -8,49 +9,115 @@ import org.apache.kafka.streams.processor.api.Record;
 import org.apache.kafka.streams.state.KeyValueStore;
 import org.closeness.decoder.dto.FriendClickEvent;
 import org.closeness.decoder.service.S3CleanupService;
-import tools.jackson.databind.ObjectMapper;
 
 import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.closeness.decoder.service.KafkaStreamsTopology.CLICK_STORE;
+import static org.closeness.decoder.service.KafkaStreamsTopology.LEGACY_CLICK_STORE;
 
 @Slf4j
 public class ClickEventProcessor
-        implements Processor<String, String, Void, Void> {
-    private KeyValueStore<String, Long> clickCountStore;
+        implements Processor<String, FriendClickEvent, Void, Void> {
+    private KeyValueStore<Bytes, Long> clickCountStore;
     private final S3CleanupService cleanupService;
-    private final ObjectMapper objectMapper;
+    private final Executor flushExecutor;
+    // flushes finished off-thread, applied to the store on the next punctuation
+    private final ConcurrentLinkedQueue<ClickFlushResult> completed = new ConcurrentLinkedQueue<>();
+
     public ClickEventProcessor(S3CleanupService cleanupService,
-                        ObjectMapper objectMapper) {
+                        Executor flushExecutor) {
         this.cleanupService = cleanupService;
-        this.objectMapper = objectMapper;
+        this.flushExecutor = flushExecutor;
     }
     @Override
     public void init(ProcessorContext<Void, Void> context) {
         this.clickCountStore = context.getStateStore(CLICK_STORE);
+        migrateLegacyStore(context.getStateStore(LEGACY_CLICK_STORE));
+        int restored = PendingClicks.restoreAll(clickCountStore);
+        if (restored > 0) {
+            log.info("Restored {} click counts whose flush did not finish", restored);
+        }
 
         context.schedule(Duration.ofSeconds(20),
-                PunctuationType.WALL_CLOCK_TIME, timestamp -> {
-                    try (var iterator = clickCountStore.all()) {
-                        while (iterator.hasNext()) {
-                            var entry = iterator.next();
-                            cleanupService.flushClickCount(entry.key, entry.value);
-                            clickCountStore.delete(entry.key);
-                        }
-                    }
-                });
+                PunctuationType.WALL_CLOCK_TIME, timestamp -> flushClickCounts());
     }
     @Override
-    public void process(Record<String, String> record) {
+    public void process(Record<String, FriendClickEvent> record) {
         try {
-            FriendClickEvent event = objectMapper.readValue(
-                    record.value(), FriendClickEvent.class);
-            String key = event.getFriendCode();
-            Long current = clickCountStore.get(key);
-            clickCountStore.put(key, (current == null ? 0 : current) + 1);
-            log.info("Click event flushed for: {}",key);
+            FriendClickEvent event = record.value();
+            addClicks(UUID.fromString(event.getFriendCode()), event.clicks());
+            log.info("Click event flushed for: {}",event.getFriendCode());
         } catch (Exception e) {
             log.error(e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private void addClicks(UUID friendCode, long clicks) {
+        PendingClicks.add(clickCountStore, friendCode, clicks);
+    }
+
+    private void flushClickCounts() {
+        applyCompletedFlushes();
+
+        Map<UUID, Long> deltas = PendingClicks.unstaged(clickCountStore);
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        // staged first so the deltas stay in the store until their write commits
+        long batchId = PendingClicks.stage(clickCountStore, deltas);
+        try {
+            flushExecutor.execute(() -> {
+                try {
+                    cleanupService.flushClickCounts(deltas);
+                    completed.add(new ClickFlushResult(batchId, deltas, true));
+                } catch (Exception e) {
+                    log.error("Click count flush of {} keys failed, retrying next punctuation: {}",
+                            deltas.size(), e.getMessage());
+                    completed.add(new ClickFlushResult(batchId, deltas, false));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Click flush queue is full, keeping {} keys for the next punctuation", deltas.size());
+            PendingClicks.restore(clickCountStore, batchId, deltas);
+        }
+    }
+
+    private void applyCompletedFlushes() {
+        ClickFlushResult result;
+        while ((result = completed.poll()) != null) {
+            if (result.flushed()) {
+                PendingClicks.complete(clickCountStore, result.batchId(), result.deltas().keySet());
+            } else {
+                PendingClicks.restore(clickCountStore, result.batchId(), result.deltas());
+            }
+        }
+    }
+
+    private void migrateLegacyStore(KeyValueStore<String, Long> legacyStore) {
+        int migrated = 0;
+        try (var iterator = legacyStore.all()) {
+            while (iterator.hasNext()) {
+                var entry = iterator.next();
+                try {
+                    addClicks(UUID.fromString(entry.key), entry.value);
+                    migrated++;
+                } catch (IllegalArgumentException e) {
+                    log.warn("Dropping legacy click count for invalid friend code: {}", entry.key);
+                }
+                legacyStore.delete(entry.key);
+            }
+        }
+        if (migrated > 0) {
+            log.info("Migrated {} click counts from {}", migrated, LEGACY_CLICK_STORE);
+        }
+    }
+
+    private record ClickFlushResult(long batchId, Map<UUID, Long> deltas, boolean flushed) {
+    }
+}
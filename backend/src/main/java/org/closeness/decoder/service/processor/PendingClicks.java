@@ -0,0 +1,108 @@
+package org.closeness.decoder.service.processor;
+
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.closeness.decoder.service.serde.StoreKeys;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Click counts on their way to the database. Staging a batch moves its
+ * counts from the friend code keys to pending keys in the same click store,
+ * so new clicks keep accumulating under the friend code while the batch is
+ * written, and the batch stays in the changelogged store until the write
+ * has committed. A failed write, or a task restarted with batches still
+ * pending, merges them back so they are flushed again. Delivery to the
+ * database is therefore at least once.
+ * <p>
+ * Only called from the stream thread.
+ */
+final class PendingClicks {
+
+    private static final AtomicLong NEXT_BATCH_ID = new AtomicLong();
+
+    private PendingClicks() {
+    }
+
+    /**
+     * Moves the counts out of their friend code keys into a new batch.
+     *
+     * @return the batch id
+     */
+    static long stage(KeyValueStore<Bytes, Long> store, Map<UUID, Long> clicks) {
+        long batchId = NEXT_BATCH_ID.incrementAndGet();
+        clicks.forEach((friendCode, count) -> {
+            store.put(StoreKeys.pendingClickKey(batchId, friendCode), count);
+            store.delete(StoreKeys.friendCodeKey(friendCode));
+        });
+        return batchId;
+    }
+
+    /**
+     * Drops a batch whose counts have been written.
+     */
+    static void complete(KeyValueStore<Bytes, Long> store, long batchId, Iterable<UUID> friendCodes) {
+        friendCodes.forEach(friendCode -> store.delete(StoreKeys.pendingClickKey(batchId, friendCode)));
+    }
+
+    /**
+     * Merges a batch that was not written back into its friend code keys.
+     */
+    static void restore(KeyValueStore<Bytes, Long> store, long batchId, Map<UUID, Long> clicks) {
+        clicks.forEach((friendCode, count) -> {
+            add(store, friendCode, count);
+            store.delete(StoreKeys.pendingClickKey(batchId, friendCode));
+        });
+    }
+
+    /**
+     * Merges every pending batch back, for a task starting up with batches
+     * whose write may never have finished.
+     *
+     * @return the number of counts restored
+     */
+    static int restoreAll(KeyValueStore<Bytes, Long> store) {
+        List<KeyValue<Bytes, Long>> pending = new ArrayList<>();
+        try (var iterator = store.all()) {
+            while (iterator.hasNext()) {
+                var entry = iterator.next();
+                if (StoreKeys.isPendingClickKey(entry.key)) {
+                    pending.add(entry);
+                }
+            }
+        }
+        for (KeyValue<Bytes, Long> entry : pending) {
+            add(store, StoreKeys.pendingClickFriendCode(entry.key), entry.value);
+            store.delete(entry.key);
+        }
+        return pending.size();
+    }
+
+    /**
+     * Reads the counts under friend code keys, skipping pending batches.
+     */
+    static Map<UUID, Long> unstaged(KeyValueStore<Bytes, Long> store) {
+        Map<UUID, Long> clicks = new HashMap<>();
+        try (var iterator = store.all()) {
+            while (iterator.hasNext()) {
+                var entry = iterator.next();
+                if (StoreKeys.isFriendCodeKey(entry.key)) {
+                    clicks.put(StoreKeys.friendCode(entry.key), entry.value);
+                }
+            }
+        }
+        return clicks;
+    }
+
+    static void add(KeyValueStore<Bytes, Long> store, UUID friendCode, long clicks) {
+        Bytes key = StoreKeys.friendCodeKey(friendCode);
+        Long current = store.get(key);
+        store.put(key, (current == null ? 0 : current) + clicks);
+    }
+}
@@ -0,0 +1,113 @@
+package org.closeness.decoder.service.processor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel with {@value #LEVELS} levels of {@value #SLOTS} slots.
+ * Level 0 slots span one tick, each higher level spans {@value #SLOTS} times more,
+ * so scheduling is O(1) and an entry is moved down at most {@value #LEVELS} times
+ * before it fires. Deadlines beyond the top level wait in an overflow list.
+ * <p>
+ * Not thread safe; owned by a single stream task and driven from its punctuator.
+ */
+final class TimingWheel<T> {
+
+    static final int SLOTS = 64;
+    static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    private final long tickMs;
+    private final List<ArrayDeque<Entry<T>>> slots;
+    private final List<Entry<T>> overflow = new ArrayList<>();
+    private final List<T> due = new ArrayList<>();
+    private long currentTick;
+    private int size;
+
+    TimingWheel(long tickMs, long startMs) {
+        this.tickMs = tickMs;
+        this.currentTick = startMs / tickMs;
+        this.slots = new ArrayList<>(LEVELS * SLOTS);
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            slots.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Schedules an item to fire on the first advance that reaches deadlineMs
+     * rounded up to a whole tick.
+     */
+    void schedule(long deadlineMs, T item) {
+        size++;
+        place(new Entry<>(-Math.floorDiv(-deadlineMs, tickMs), item));
+    }
+
+    /**
+     * Moves the wheel to nowMs and returns every item whose deadline has passed.
+     */
+    List<T> advance(long nowMs) {
+        long targetTick = nowMs / tickMs;
+        if (size == due.size()) {
+            currentTick = Math.max(currentTick, targetTick);
+        }
+        while (currentTick < targetTick) {
+            currentTick++;
+            if ((currentTick & ((1L << (SLOT_BITS * LEVELS)) - 1)) == 0) {
+                List<Entry<T>> pending = new ArrayList<>(overflow);
+                overflow.clear();
+                pending.forEach(this::place);
+            }
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(slot(level, currentTick >>> (SLOT_BITS * level)));
+                }
+            }
+            ArrayDeque<Entry<T>> expired = slot(0, currentTick);
+            for (Entry<T> entry : expired) {
+                due.add(entry.item());
+            }
+            expired.clear();
+        }
+        List<T> fired = new ArrayList<>(due);
+        size -= fired.size();
+        due.clear();
+        return fired;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // an entry goes to the lowest level whose enclosing block it shares with the
+    // current tick; its slot there is strictly ahead of the cursor, so it is
+    // cascaded or fired before its deadline passes
+    private void place(Entry<T> entry) {
+        if (entry.deadlineTick() <= currentTick) {
+            due.add(entry.item());
+            return;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = SLOT_BITS * (level + 1);
+            if ((entry.deadlineTick() >>> shift) == (currentTick >>> shift)) {
+                slot(level, entry.deadlineTick() >>> (SLOT_BITS * level)).add(entry);
+                return;
+            }
+        }
+        overflow.add(entry);
+    }
+
+    private void cascade(ArrayDeque<Entry<T>> slot) {
+        List<Entry<T>> entries = new ArrayList<>(slot);
+        slot.clear();
+        entries.forEach(this::place);
+    }
+
+    private ArrayDeque<Entry<T>> slot(int level, long index) {
+        return slots.get(level * SLOTS + (int) (index & SLOT_MASK));
+    }
+
+    private record Entry<T>(long deadlineTick, T item) {
+    }
+}
@@ -1,6 +1,7 @@
 package org.closeness.decoder.service.processor;
 
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.utils.Bytes;
 import org.apache.kafka.streams.processor.PunctuationType;
 import org.apache.kafka.streams.processor.api.Processor;
 import org.apache.kafka.streams.processor.api.ProcessorContext;
@@ -9,66 +10,215 @@ import org.apache.kafka.streams.state.KeyValueStore;
 import org.closeness.decoder.dto.ExpiryStateStore;
 import org.closeness.decoder.dto.FriendUploadEvent;
 import org.closeness.decoder.service.S3CleanupService;
-import tools.jackson.databind.ObjectMapper;
+import org.closeness.decoder.service.serde.StoreKeys;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.closeness.decoder.service.KafkaStreamsTopology.CLICK_STORE;
 import static org.closeness.decoder.service.KafkaStreamsTopology.EXPIRY_STORE;
+import static org.closeness.decoder.service.KafkaStreamsTopology.LEGACY_EXPIRY_STORE;
 
 @Slf4j
 public class UploadEventProcessor
-        implements Processor<String, String, Void, Void> {
+        implements Processor<String, FriendUploadEvent, Void, Void> {
 
-    private KeyValueStore<String, ExpiryStateStore> expiryStore;
-    private KeyValueStore<String, Long> clickStore;
+    private static final long TICK_MS = 1000;
+    private static final long RETRY_DELAY_MS = 30_000;
+
+    private KeyValueStore<Bytes, ExpiryStateStore> expiryStore;
+    private KeyValueStore<Bytes, Long> clickStore;
     private final S3CleanupService cleanupService;
-    private final ObjectMapper objectMapper;
+    private final Executor expiryExecutor;
+    private final int batchSize;
+    // store keys handed to the worker pool and not yet reported back
+    private final Set<Bytes> inFlight = new HashSet<>();
+    private final ConcurrentLinkedQueue<ExpiryBatchResult> completed = new ConcurrentLinkedQueue<>();
+    private TimingWheel<Bytes> timingWheel;
 
     public UploadEventProcessor(S3CleanupService cleanupService,
-                                ObjectMapper objectMapper) {
+                                Executor expiryExecutor,
+                                int batchSize) {
         this.cleanupService = cleanupService;
-        this.objectMapper = objectMapper;
+        this.expiryExecutor = expiryExecutor;
+        this.batchSize = batchSize;
     }
 
     @Override
     public void init(ProcessorContext<Void, Void> context) {
         this.expiryStore = context.getStateStore(EXPIRY_STORE);
         this.clickStore = context.getStateStore(CLICK_STORE);
+        this.timingWheel = new TimingWheel<>(TICK_MS, System.currentTimeMillis());
+        migrateLegacyStore(context.getStateStore(LEGACY_EXPIRY_STORE));
+        PendingClicks.restoreAll(clickStore);
+        rebuildTimingWheel();
 
-        context.schedule(Duration.ofSeconds(30),
-                PunctuationType.WALL_CLOCK_TIME, timestamp -> {
-                    String now = String.format("%016d", System.currentTimeMillis());
-                    try (var iterator = expiryStore.range("0", now + "_~")) {
-                        while (iterator.hasNext()) {
-                            var entry = iterator.next();
-                            ExpiryStateStore val = entry.value;
-                            Long clicks = clickStore.get(val.getFriendCode());
-                            if (clicks != null && clicks > 0) {
-                                cleanupService.flushClickCount(val.getFriendCode(), clicks);
-                                clickStore.delete(val.getFriendCode());
-                            }
-                            cleanupService.handleExpiry(val.getFriendCode(), val.getStorageKey());
-                            expiryStore.delete(entry.key);
-                        }
-                    }
-                });
+        context.schedule(Duration.ofMillis(TICK_MS),
+                PunctuationType.WALL_CLOCK_TIME, this::fireExpired);
     }
 
     @Override
-    public void process(Record<String, String> record) {
+    public void process(Record<String, FriendUploadEvent> record) {
         try {
-            FriendUploadEvent event = objectMapper.readValue(
-                    record.value(), FriendUploadEvent.class);
-            String compositeKey = String.format("%016d_%s",
-                    event.getExpiredAt(), event.getFriendCode());
+            FriendUploadEvent event = record.value();
+            Bytes expiryKey = StoreKeys.expiryKey(
+                    event.getExpiredAt(), UUID.fromString(event.getFriendCode()));
             ExpiryStateStore value = new ExpiryStateStore(
                     event.getFriendCode(), event.getS3FileKey());
-            expiryStore.put(compositeKey, value);
-            log.info("State Store Key-Value pair added: {}-{}",compositeKey,expiryStore.get(compositeKey));
+            expiryStore.put(expiryKey, value);
+            timingWheel.schedule(event.getExpiredAt(), expiryKey);
+            log.info("State Store Key-Value pair added: {}-{}",event.getExpiredAt(),value);
         } catch (Exception e) {
             log.error(e.getMessage());
         }
     }
 
-}
\ No newline at end of file
+    private void fireExpired(long now) {
+        applyCompletedBatches(now);
+
+        List<Bytes> batchKeys = new ArrayList<>(batchSize);
+        List<ExpiryStateStore> batch = new ArrayList<>(batchSize);
+        List<Bytes> due = timingWheel.advance(now);
+        for (int i = 0; i < due.size(); i++) {
+            Bytes key = due.get(i);
+            ExpiryStateStore value = inFlight.contains(key) ? null : expiryStore.get(key);
+            // already expired, or a duplicate of a key that is being expired
+            if (value == null) {
+                continue;
+            }
+            batchKeys.add(key);
+            batch.add(new ExpiryStateStore(
+                    StoreKeys.expiryFriendCode(key).toString(), value.getStorageKey()));
+            if (batch.size() >= batchSize) {
+                if (!submit(batchKeys, batch)) {
+                    reschedule(batchKeys, now + TICK_MS);
+                    reschedule(due.subList(i + 1, due.size()), now + TICK_MS);
+                    return;
+                }
+                batchKeys = new ArrayList<>(batchSize);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty() && !submit(batchKeys, batch)) {
+            reschedule(batchKeys, now + TICK_MS);
+        }
+    }
+
+    private void reschedule(List<Bytes> keys, long deadline) {
+        keys.forEach(key -> timingWheel.schedule(deadline, key));
+    }
+
+    // the store is the source of truth; the wheel only holds keys and is
+    // rebuilt from it whenever the task is (re)initialised
+    private void rebuildTimingWheel() {
+        try (var iterator = expiryStore.all()) {
+            while (iterator.hasNext()) {
+                Bytes key = iterator.next().key;
+                timingWheel.schedule(StoreKeys.expiresAt(key), key);
+            }
+        }
+        log.info("Scheduled {} pending expiries", timingWheel.size());
+    }
+
+    private boolean submit(List<Bytes> storeKeys, List<ExpiryStateStore> entries) {
+        Map<UUID, Long> clicks = new HashMap<>();
+        for (ExpiryStateStore entry : entries) {
+            UUID friendCode = UUID.fromString(entry.getFriendCode());
+            Long pending = clickStore.get(StoreKeys.friendCodeKey(friendCode));
+            if (pending != null && pending > 0) {
+                clicks.put(friendCode, pending);
+            }
+        }
+        // staged so the final counts stay in the store until the worker has written them
+        long clickBatchId = PendingClicks.stage(clickStore, clicks);
+        try {
+            expiryExecutor.execute(() -> completed.add(expire(storeKeys, entries, clickBatchId, clicks)));
+        } catch (RejectedExecutionException e) {
+            log.warn("Expiry worker pool is saturated, deferring {} entries", entries.size());
+            PendingClicks.restore(clickStore, clickBatchId, clicks);
+            return false;
+        }
+        inFlight.addAll(storeKeys);
+        return true;
+    }
+
+    // runs on the expiry worker pool, never touches the state stores
+    private ExpiryBatchResult expire(List<Bytes> storeKeys, List<ExpiryStateStore> entries,
+                                     long clickBatchId, Map<UUID, Long> clicks) {
+        boolean clicksFlushed = false;
+        try {
+            if (!clicks.isEmpty()) {
+                cleanupService.flushClickCounts(clicks);
+            }
+            clicksFlushed = true;
+            Set<String> failedFriendCodes = cleanupService.handleExpiryBatch(entries);
+            List<Bytes> expiredKeys = new ArrayList<>(storeKeys.size());
+            List<Bytes> retryKeys = new ArrayList<>();
+            for (int i = 0; i < entries.size(); i++) {
+                if (failedFriendCodes.contains(entries.get(i).getFriendCode())) {
+                    retryKeys.add(storeKeys.get(i));
+                } else {
+                    expiredKeys.add(storeKeys.get(i));
+                }
+            }
+            return new ExpiryBatchResult(expiredKeys, retryKeys, clickBatchId, clicks, true);
+        } catch (Exception e) {
+            log.error("Expiry batch of {} entries failed, retrying in {} ms: {}",
+                    entries.size(), RETRY_DELAY_MS, e.getMessage());
+            return new ExpiryBatchResult(List.of(), storeKeys, clickBatchId, clicks, clicksFlushed);
+        }
+    }
+
+    private void applyCompletedBatches(long now) {
+        ExpiryBatchResult result;
+        while ((result = completed.poll()) != null) {
+            result.expiredKeys().forEach(expiryStore::delete);
+            result.expiredKeys().forEach(inFlight::remove);
+            result.retryKeys().forEach(inFlight::remove);
+            reschedule(result.retryKeys(), now + RETRY_DELAY_MS);
+            if (result.clicksFlushed()) {
+                PendingClicks.complete(clickStore, result.clickBatchId(), result.clicks().keySet());
+            } else {
+                PendingClicks.restore(clickStore, result.clickBatchId(), result.clicks());
+            }
+        }
+    }
+
+    // legacy keys are "%016d_<friendCode>" strings with the friend code repeated in the value
+    private void migrateLegacyStore(KeyValueStore<String, ExpiryStateStore> legacyStore) {
+        int migrated = 0;
+        try (var iterator = legacyStore.all()) {
+            while (iterator.hasNext()) {
+                var entry = iterator.next();
+                try {
+                    long expiresAt = Long.parseLong(entry.key.substring(0, entry.key.indexOf('_')));
+                    UUID friendCode = UUID.fromString(entry.value.getFriendCode());
+                    expiryStore.put(StoreKeys.expiryKey(expiresAt, friendCode), entry.value);
+                    migrated++;
+                } catch (RuntimeException e) {
+                    log.warn("Dropping unreadable legacy expiry entry {}: {}", entry.key, e.getMessage());
+                }
+                legacyStore.delete(entry.key);
+            }
+        }
+        if (migrated > 0) {
+            log.info("Migrated {} expiry entries from {}", migrated, LEGACY_EXPIRY_STORE);
+        }
+    }
+
+    private record ExpiryBatchResult(List<Bytes> expiredKeys,
+                                     List<Bytes> retryKeys,
+                                     long clickBatchId,
+                                     Map<UUID, Long> clicks,
+                                     boolean clicksFlushed) {
+    }
+}
@@ -0,0 +1,48 @@
+package org.closeness.decoder.service.serde;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+import org.closeness.decoder.dto.ExpiryStateStore;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary value serde for the expiry store: a format version byte followed by
+ * the UTF-8 storage key. The friend code already lives in the store key, so it
+ * is not written; deserialized values carry a null friend code until the
+ * processor fills it in from the key.
+ */
+public class ExpiryStateStoreSerde implements Serde<ExpiryStateStore> {
+
+    private static final byte VERSION = 1;
+
+    @Override
+    public Serializer<ExpiryStateStore> serializer() {
+        return (topic, data) -> {
+            if (data == null) {
+                return null;
+            }
+            byte[] storageKey = data.getStorageKey().getBytes(StandardCharsets.UTF_8);
+            byte[] bytes = new byte[storageKey.length + 1];
+            bytes[0] = VERSION;
+            System.arraycopy(storageKey, 0, bytes, 1, storageKey.length);
+            return bytes;
+        };
+    }
+
+    @Override
+    public Deserializer<ExpiryStateStore> deserializer() {
+        return (topic, bytes) -> {
+            if (bytes == null) {
+                return null;
+            }
+            if (bytes.length == 0 || bytes[0] != VERSION) {
+                throw new SerializationException("Unknown expiry store value format");
+            }
+            return new ExpiryStateStore(null,
+                    new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8));
+        };
+    }
+}
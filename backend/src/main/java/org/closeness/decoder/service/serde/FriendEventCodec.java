@@ -0,0 +1,124 @@
+package org.closeness.decoder.service.serde;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.closeness.decoder.dto.FriendClickEvent;
+import org.closeness.decoder.dto.FriendUploadEvent;
+import tools.jackson.databind.DeserializationFeature;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Binary wire format for click and upload events.
+ * <p>
+ * Every record starts with a magic byte, a format version and an event type.
+ * Version 1 bodies are:
+ * <ul>
+ *     <li>click: friend code (16 bytes), count, windowStart, windowEnd (8 bytes each)</li>
+ *     <li>upload: friend code (16 bytes), storage key length (4 bytes) and UTF-8 bytes,
+ *     createdAt, expiredAt (8 bytes each)</li>
+ * </ul>
+ * Later versions may only append fields, so a decoder reads the fields it knows
+ * and ignores the rest. Records starting with '{' are JSON written before this
+ * format existed and are decoded with Jackson.
+ */
+public final class FriendEventCodec {
+
+    static final byte MAGIC = (byte) 0xCD;
+    static final byte VERSION = 1;
+    static final byte CLICK_EVENT = 1;
+    static final byte UPLOAD_EVENT = 2;
+
+    private static final int HEADER_SIZE = 3;
+    private static final int UUID_SIZE = 16;
+    // legacy click records carry no count; let it default to zero
+    private static final JsonMapper JSON = JsonMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES)
+            .build();
+
+    private FriendEventCodec() {
+    }
+
+    public static byte[] encode(FriendClickEvent event) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + UUID_SIZE + Long.BYTES * 3);
+        writeHeader(buffer, CLICK_EVENT);
+        writeUuid(buffer, event.getFriendCode());
+        buffer.putLong(event.getCount());
+        buffer.putLong(event.getWindowStart());
+        buffer.putLong(event.getWindowEnd());
+        return buffer.array();
+    }
+
+    public static byte[] encode(FriendUploadEvent event) {
+        byte[] storageKey = event.getS3FileKey().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(
+                HEADER_SIZE + UUID_SIZE + Integer.BYTES + storageKey.length + Long.BYTES * 2);
+        writeHeader(buffer, UPLOAD_EVENT);
+        writeUuid(buffer, event.getFriendCode());
+        buffer.putInt(storageKey.length);
+        buffer.put(storageKey);
+        buffer.putLong(event.getCreatedAt());
+        buffer.putLong(event.getExpiredAt());
+        return buffer.array();
+    }
+
+    public static FriendClickEvent decodeClickEvent(byte[] bytes) {
+        if (isJson(bytes)) {
+            return JSON.readValue(bytes, FriendClickEvent.class);
+        }
+        ByteBuffer buffer = readHeader(bytes, CLICK_EVENT);
+        return new FriendClickEvent(
+                readUuid(buffer),
+                buffer.getLong(),
+                buffer.getLong(),
+                buffer.getLong());
+    }
+
+    public static FriendUploadEvent decodeUploadEvent(byte[] bytes) {
+        if (isJson(bytes)) {
+            return JSON.readValue(bytes, FriendUploadEvent.class);
+        }
+        ByteBuffer buffer = readHeader(bytes, UPLOAD_EVENT);
+        String friendCode = readUuid(buffer);
+        byte[] storageKey = new byte[buffer.getInt()];
+        buffer.get(storageKey);
+        return new FriendUploadEvent(
+                friendCode,
+                new String(storageKey, StandardCharsets.UTF_8),
+                buffer.getLong(),
+                buffer.getLong());
+    }
+
+    private static boolean isJson(byte[] bytes) {
+        return bytes.length > 0 && bytes[0] == '{';
+    }
+
+    private static void writeHeader(ByteBuffer buffer, byte type) {
+        buffer.put(MAGIC).put(VERSION).put(type);
+    }
+
+    private static ByteBuffer readHeader(byte[] bytes, byte expectedType) {
+        if (bytes.length < HEADER_SIZE || bytes[0] != MAGIC) {
+            throw new SerializationException("Not a friend event record");
+        }
+        if (bytes[1] < 1) {
+            throw new SerializationException("Unsupported friend event version " + bytes[1]);
+        }
+        if (bytes[2] != expectedType) {
+            throw new SerializationException("Unexpected friend event type " + bytes[2]);
+        }
+        return ByteBuffer.wrap(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE);
+    }
+
+    private static void writeUuid(ByteBuffer buffer, String friendCode) {
+        UUID uuid = UUID.fromString(friendCode);
+        buffer.putLong(uuid.getMostSignificantBits());
+        buffer.putLong(uuid.getLeastSignificantBits());
+    }
+
+    private static String readUuid(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong()).toString();
+    }
+}
@@ -0,0 +1,24 @@
+package org.closeness.decoder.service.serde;
+
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.closeness.decoder.dto.FriendClickEvent;
+import org.closeness.decoder.dto.FriendUploadEvent;
+
+public final class FriendEventSerdes {
+
+    private FriendEventSerdes() {
+    }
+
+    public static Serde<FriendClickEvent> clickEvent() {
+        return Serdes.serdeFrom(
+                (topic, data) -> data == null ? null : FriendEventCodec.encode(data),
+                (topic, bytes) -> bytes == null ? null : FriendEventCodec.decodeClickEvent(bytes));
+    }
+
+    public static Serde<FriendUploadEvent> uploadEvent() {
+        return Serdes.serdeFrom(
+                (topic, data) -> data == null ? null : FriendEventCodec.encode(data),
+                (topic, bytes) -> bytes == null ? null : FriendEventCodec.decodeUploadEvent(bytes));
+    }
+}
@@ -0,0 +1,26 @@
+package org.closeness.decoder.service.serde;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+import org.closeness.decoder.dto.FriendClickEvent;
+import org.closeness.decoder.dto.FriendUploadEvent;
+
+/**
+ * Producer-side value serializer writing {@link FriendEventCodec} records.
+ */
+public class FriendEventSerializer implements Serializer<Object> {
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        if (data == null) {
+            return null;
+        }
+        if (data instanceof FriendClickEvent clickEvent) {
+            return FriendEventCodec.encode(clickEvent);
+        }
+        if (data instanceof FriendUploadEvent uploadEvent) {
+            return FriendEventCodec.encode(uploadEvent);
+        }
+        throw new SerializationException("Unsupported event type " + data.getClass().getName());
+    }
+}
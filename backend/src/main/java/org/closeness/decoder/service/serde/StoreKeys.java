@@ -0,0 +1,75 @@
+package org.closeness.decoder.service.serde;
+
+import org.apache.kafka.common.utils.Bytes;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Fixed-width binary keys for the RocksDB state stores.
+ * Friend code keys are the 16 bytes of the UUID; expiry keys are a big-endian
+ * epoch-millis timestamp followed by the friend code, so the bytewise store
+ * order is expiry order.
+ * Pending click keys are a flush batch id followed by the friend code; they
+ * share the click store with the plain friend code keys and are told apart
+ * by length.
+ */
+public final class StoreKeys {
+
+    public static final int FRIEND_CODE_KEY_SIZE = 16;
+    public static final int EXPIRY_KEY_SIZE = Long.BYTES + FRIEND_CODE_KEY_SIZE;
+    public static final int PENDING_CLICK_KEY_SIZE = Long.BYTES + FRIEND_CODE_KEY_SIZE;
+
+    private StoreKeys() {
+    }
+
+    public static Bytes friendCodeKey(UUID friendCode) {
+        return Bytes.wrap(ByteBuffer.allocate(FRIEND_CODE_KEY_SIZE)
+                .putLong(friendCode.getMostSignificantBits())
+                .putLong(friendCode.getLeastSignificantBits())
+                .array());
+    }
+
+    public static UUID friendCode(Bytes friendCodeKey) {
+        ByteBuffer buffer = ByteBuffer.wrap(friendCodeKey.get());
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    public static Bytes expiryKey(long expiresAt, UUID friendCode) {
+        return Bytes.wrap(ByteBuffer.allocate(EXPIRY_KEY_SIZE)
+                .putLong(expiresAt)
+                .putLong(friendCode.getMostSignificantBits())
+                .putLong(friendCode.getLeastSignificantBits())
+                .array());
+    }
+
+    public static long expiresAt(Bytes expiryKey) {
+        return ByteBuffer.wrap(expiryKey.get()).getLong(0);
+    }
+
+    public static UUID expiryFriendCode(Bytes expiryKey) {
+        ByteBuffer buffer = ByteBuffer.wrap(expiryKey.get());
+        return new UUID(buffer.getLong(Long.BYTES), buffer.getLong(Long.BYTES * 2));
+    }
+
+    public static boolean isFriendCodeKey(Bytes key) {
+        return key.get().length == FRIEND_CODE_KEY_SIZE;
+    }
+
+    public static Bytes pendingClickKey(long batchId, UUID friendCode) {
+        return Bytes.wrap(ByteBuffer.allocate(PENDING_CLICK_KEY_SIZE)
+                .putLong(batchId)
+                .putLong(friendCode.getMostSignificantBits())
+                .putLong(friendCode.getLeastSignificantBits())
+                .array());
+    }
+
+    public static boolean isPendingClickKey(Bytes key) {
+        return key.get().length == PENDING_CLICK_KEY_SIZE;
+    }
+
+    public static UUID pendingClickFriendCode(Bytes pendingClickKey) {
+        ByteBuffer buffer = ByteBuffer.wrap(pendingClickKey.get());
+        return new UUID(buffer.getLong(Long.BYTES), buffer.getLong(Long.BYTES * 2));
+    }
+}
@@ -0,0 +1,297 @@
+package org.closeness.decoder.service.upload;
+
+import lombok.extern.slf4j.Slf4j;
+import org.closeness.decoder.configuration.S3Properties;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Streams an upload into object storage without buffering the whole body.
+ * <p>
+ * The body is read one part at a time into buffers taken from a fixed pool,
+ * so heap use is bounded by maxInFlightParts * partSize no matter how many
+ * uploads are running. Parts are sent through the non-blocking client, so a
+ * part in flight holds a buffer but no thread, and its buffer goes back to
+ * the pool once sent. A body that fits in one part is sent with a single PUT.
+ * <p>
+ * A buffer is only taken once the next byte of the body has arrived, and may
+ * then be held for at most bufferHoldMs while the part fills, so clients that
+ * stall or trickle cannot keep the pool from everyone else. A read that gets
+ * no bytes at all is ended by the container's socket read timeout.
+ * <p>
+ * A SHA-256 digest of the body is computed as it is read. For single-part
+ * bodies the digest is known before anything is sent, so an object that is
+ * already stored can be reused and the PUT skipped.
+ */
+@Component
+@Slf4j
+public class MultipartUploadEngine {
+
+    private final S3AsyncClient s3AsyncClient;
+    private final S3Properties s3Properties;
+    private final int partSize;
+    private final long maxObjectSize;
+    private final long bufferWaitMs;
+    private final long bufferHoldMs;
+    private final BlockingQueue<byte[]> buffers;
+
+    public MultipartUploadEngine(S3AsyncClient s3AsyncClient, S3Properties s3Properties,
+                                 @Value("${app.upload.part-size:8MB}") DataSize partSize,
+                                 @Value("${app.upload.max-in-flight-parts:8}") int maxInFlightParts,
+                                 @Value("${app.upload.max-size:2GB}") DataSize maxObjectSize,
+                                 @Value("${app.upload.buffer-wait-ms:30000}") long bufferWaitMs,
+                                 @Value("${app.upload.buffer-hold-ms:120000}") long bufferHoldMs) {
+        // S3 rejects multipart parts under 5MB (except the last one)
+        if (partSize.toMegabytes() < 5) {
+            throw new IllegalArgumentException("app.upload.part-size must be at least 5MB");
+        }
+        this.s3AsyncClient = s3AsyncClient;
+        this.s3Properties = s3Properties;
+        this.partSize = Math.toIntExact(partSize.toBytes());
+        this.maxObjectSize = maxObjectSize.toBytes();
+        this.bufferWaitMs = bufferWaitMs;
+        this.bufferHoldMs = bufferHoldMs;
+        // buffers are allocated on first use, the queue only bounds how many exist
+        this.buffers = new ArrayBlockingQueue<>(maxInFlightParts);
+        for (int i = 0; i < maxInFlightParts; i++) {
+            buffers.add(new byte[0]);
+        }
+    }
+
+    /**
+     * Uploads everything remaining in the stream under the given key.
+     *
+     * @throws MaxUploadSizeExceededException if the body is larger than app.upload.max-size
+     */
+    public UploadedObject upload(InputStream in, String key, String contentType) throws IOException {
+        return upload(in, key, contentType, digest -> null);
+    }
+
+    /**
+     * Like {@link #upload(InputStream, String, String)}, but asks reuseExisting for
+     * an already stored object with the same digest before sending a single-part
+     * body. If it returns a key, nothing is uploaded and that key is returned.
+     */
+    public UploadedObject upload(InputStream in, String key, String contentType,
+                                 Function<String, String> reuseExisting) throws IOException {
+        MessageDigest digest = sha256();
+        int head = in.read();
+        byte[] first = takeBuffer();
+        int firstLength;
+        try {
+            firstLength = head < 0 ? 0 : fill(in, first, head);
+        } catch (IOException | RuntimeException e) {
+            buffers.add(first);
+            throw e;
+        }
+        if (firstLength < partSize) {
+            try {
+                digest.update(first, 0, firstLength);
+                String hex = HexFormat.of().formatHex(digest.digest());
+                String existingKey = firstLength > 0 ? reuseExisting.apply(hex) : null;
+                if (existingKey != null) {
+                    return new UploadedObject(existingKey, firstLength, hex, true);
+                }
+                await(s3AsyncClient.putObject(PutObjectRequest.builder()
+                                .bucket(s3Properties.getBucketName())
+                                .key(key)
+                                .contentType(contentType)
+                                .build(),
+                        body(first, firstLength)));
+                return new UploadedObject(key, firstLength, hex, false);
+            } finally {
+                buffers.add(first);
+            }
+        }
+        return uploadParts(in, key, contentType, first, digest);
+    }
+
+    private UploadedObject uploadParts(InputStream in, String key, String contentType, byte[] first,
+                                       MessageDigest digest) throws IOException {
+        String uploadId = await(s3AsyncClient.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                        .bucket(s3Properties.getBucketName())
+                        .key(key)
+                        .contentType(contentType)
+                        .build()))
+                .uploadId();
+        List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+        // completed by the first failed part so the rest of the body is not read for nothing
+        CompletableFuture<Void> failure = new CompletableFuture<>();
+        long total = 0;
+        try {
+            byte[] buffer = first;
+            int length = partSize;
+            int partNumber = 1;
+            while (length > 0) {
+                total += length;
+                if (total > maxObjectSize) {
+                    buffers.add(buffer);
+                    throw new MaxUploadSizeExceededException(maxObjectSize);
+                }
+                // hashed before submission; the buffer is recycled once the part is sent
+                digest.update(buffer, 0, length);
+                parts.add(submitPart(key, uploadId, partNumber++, buffer, length, failure));
+                if (length < partSize) {
+                    break;
+                }
+                if (failure.isCompletedExceptionally()) {
+                    await(failure);
+                }
+                int head = in.read();
+                if (head < 0) {
+                    break;
+                }
+                buffer = takeBuffer();
+                try {
+                    length = fill(in, buffer, head);
+                } catch (IOException | RuntimeException e) {
+                    buffers.add(buffer);
+                    throw e;
+                }
+            }
+            List<CompletedPart> completedParts = new ArrayList<>(parts.size());
+            for (CompletableFuture<CompletedPart> part : parts) {
+                completedParts.add(await(part));
+            }
+            await(s3AsyncClient.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(s3Properties.getBucketName())
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                    .build()));
+            log.info("Uploaded {} in {} parts ({} bytes)", key, completedParts.size(), total);
+            return new UploadedObject(key, total, HexFormat.of().formatHex(digest.digest()), false);
+        } catch (IOException | RuntimeException e) {
+            abort(key, uploadId, parts);
+            throw e;
+        }
+    }
+
+    private CompletableFuture<CompletedPart> submitPart(String key, String uploadId, int partNumber,
+                                                        byte[] buffer, int length,
+                                                        CompletableFuture<Void> failure) {
+        CompletableFuture<UploadPartResponse> response;
+        try {
+            response = s3AsyncClient.uploadPart(UploadPartRequest.builder()
+                            .bucket(s3Properties.getBucketName())
+                            .key(key)
+                            .uploadId(uploadId)
+                            .partNumber(partNumber)
+                            .contentLength((long) length)
+                            .build(),
+                    body(buffer, length));
+        } catch (RuntimeException e) {
+            buffers.add(buffer);
+            throw e;
+        }
+        return response.whenComplete((result, error) -> {
+                    buffers.add(buffer);
+                    if (error != null) {
+                        failure.completeExceptionally(error);
+                    }
+                })
+                .thenApply(result -> CompletedPart.builder().partNumber(partNumber).eTag(result.eTag()).build());
+    }
+
+    // waits for in-flight parts so their buffers are back in the pool before giving up
+    private void abort(String key, String uploadId, List<CompletableFuture<CompletedPart>> parts) {
+        CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new))
+                .handle((ignored, error) -> null)
+                .join();
+        try {
+            await(s3AsyncClient.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(s3Properties.getBucketName())
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build()));
+        } catch (Exception e) {
+            log.error("Failed to abort multipart upload {} for {}: {}", uploadId, key, e.getMessage());
+        }
+    }
+
+    private byte[] takeBuffer() throws IOException {
+        byte[] buffer;
+        try {
+            buffer = buffers.poll(bufferWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for an upload buffer", e);
+        }
+        if (buffer == null) {
+            throw new IOException("Timed out waiting for an upload buffer");
+        }
+        return buffer.length == partSize ? buffer : new byte[partSize];
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // reads until the buffer is full or the stream ends, starting from the
+    // byte already read, and gives up once the buffer has been held too long
+    private int fill(InputStream in, byte[] buffer, int head) throws IOException {
+        buffer[0] = (byte) head;
+        int length = 1;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(bufferHoldMs);
+        while (length < buffer.length) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new IOException("Upload body arrived too slowly, gave up its buffer after "
+                        + bufferHoldMs + " ms");
+            }
+            int read = in.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+
+    // the buffer is not copied; it stays out of the pool until the request completes
+    private AsyncRequestBody body(byte[] buffer, int length) {
+        return AsyncRequestBody.fromRemainingByteBufferUnsafe(ByteBuffer.wrap(buffer, 0, length));
+    }
+
+    // unwraps async failures so callers see the SDK exception itself
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.closeness.decoder.service.upload;
+
+import lombok.extern.slf4j.Slf4j;
+import org.closeness.decoder.configuration.S3Properties;
+import org.closeness.decoder.dto.UploadUrlResponse;
+import org.closeness.decoder.exception.UploadException;
+import org.closeness.decoder.repository.FileBlobRepository;
+import org.closeness.decoder.service.RedisCacheService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Direct-to-storage uploads. The client gets a PUT url signed over the
+ * content type and length it declared, uploads the object itself, then
+ * finalizes; only the finalize step touches the backend, and it checks the
+ * stored object against what was signed before the link is created.
+ * Pending uploads live in Redis until finalized or the grace period ends.
+ * Every issued key is also recorded in the database, so an object uploaded
+ * but never finalized is purged once the grace period is over.
+ */
+@Service
+@Slf4j
+public class PresignedUploadService {
+
+    private static final char SEPARATOR = '|';
+
+    private final S3Presigner s3Presigner;
+    private final S3Client s3Client;
+    private final S3Properties s3Properties;
+    private final RedisCacheService redisCacheService;
+    private final FileBlobRepository fileBlobRepository;
+    private final Duration signatureDuration;
+    private final Duration finalizeGrace;
+    private final long maxObjectSize;
+
+    public PresignedUploadService(S3Presigner s3Presigner, S3Client s3Client, S3Properties s3Properties,
+                                  RedisCacheService redisCacheService, FileBlobRepository fileBlobRepository,
+                                  @Value("${app.upload.presign-duration:15m}") Duration signatureDuration,
+                                  @Value("${app.upload.finalize-grace:1h}") Duration finalizeGrace,
+                                  @Value("${app.upload.max-size:2GB}") DataSize maxObjectSize) {
+        this.s3Presigner = s3Presigner;
+        this.s3Client = s3Client;
+        this.s3Properties = s3Properties;
+        this.redisCacheService = redisCacheService;
+        this.fileBlobRepository = fileBlobRepository;
+        this.signatureDuration = signatureDuration;
+        this.finalizeGrace = finalizeGrace;
+        this.maxObjectSize = maxObjectSize.toBytes();
+    }
+
+    public UploadUrlResponse createUploadUrl(String key, String contentType, long contentLength, UUID userId) {
+        if (contentLength <= 0) {
+            throw new UploadException("File is not present");
+        }
+        if (contentLength > maxObjectSize) {
+            throw new UploadException("File size exceeds the allowed limit");
+        }
+        PutObjectRequest request =
+                PutObjectRequest.builder().
+                        bucket(s3Properties.getBucketName()).
+                        key(key).
+                        contentType(contentType).
+                        contentLength(contentLength).
+                        build();
+        // recorded before the url exists, so no upload can go untracked
+        fileBlobRepository.recordPendingUpload(key, signatureDuration.plus(finalizeGrace));
+        PresignedPutObjectRequest presigned = s3Presigner.presignPutObject(
+                PutObjectPresignRequest.builder().
+                        signatureDuration(signatureDuration).
+                        putObjectRequest(request).
+                        build());
+
+        redisCacheService.savePendingUpload(key,
+                userId.toString() + SEPARATOR + contentLength + SEPARATOR + contentType,
+                signatureDuration.plus(finalizeGrace));
+
+        // the client's http stack sets Host itself
+        Map<String, List<String>> headers = new HashMap<>(presigned.signedHeaders());
+        headers.keySet().removeIf("host"::equalsIgnoreCase);
+        return new UploadUrlResponse(key, presigned.url().toString(), headers,
+                presigned.expiration().toEpochMilli());
+    }
+
+    /**
+     * Checks that the object under key was requested by userId and matches the
+     * signed length and type, then consumes the pending upload. An object that
+     * does not match is deleted. A finalize before the upload finished leaves the
+     * pending upload in place so the client can retry.
+     */
+    public void finalizeUpload(String key, UUID userId) {
+        String pending = redisCacheService.getPendingUpload(key);
+        if (pending == null) {
+            throw new UploadException("Unknown or expired upload");
+        }
+        String[] fields = pending.split("\\|", 3);
+        if (!fields[0].equals(userId.toString())) {
+            throw new UploadException("Unknown or expired upload");
+        }
+
+        // NoSuchKeyException propagates as a 404 while the upload is still running
+        HeadObjectResponse head = s3Client.headObject(HeadObjectRequest.builder()
+                .bucket(s3Properties.getBucketName())
+                .key(key)
+                .build());
+        if (head.contentLength() != Long.parseLong(fields[1]) || !fields[2].equalsIgnoreCase(head.contentType())) {
+            redisCacheService.takePendingUpload(key);
+            s3Client.deleteObject(DeleteObjectRequest.builder()
+                    .bucket(s3Properties.getBucketName())
+                    .key(key)
+                    .build());
+            fileBlobRepository.clearPendingUpload(key);
+            log.warn("Rejected direct upload {}: {} bytes of {}", key, head.contentLength(), head.contentType());
+            throw new UploadException("Uploaded file does not match the requested upload");
+        }
+        // cleared before the pending upload is consumed: if this fails the upload
+        // can be finalized again, whereas the other order could purge a linked object
+        fileBlobRepository.clearPendingUpload(key);
+        if (redisCacheService.takePendingUpload(key) == null) {
+            throw new UploadException("Upload is already finalized");
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.closeness.decoder.service.upload;
+
+import lombok.extern.slf4j.Slf4j;
+import org.closeness.decoder.configuration.ExecutorConfig;
+import org.closeness.decoder.exception.UploadCapacityExceededException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Runs upload requests on a bounded executor so servlet threads are released
+ * while storage and database work is in progress. The caller's security
+ * context travels with the task. When the pool and its queue are full the
+ * request is refused up front with {@link UploadCapacityExceededException}.
+ */
+@Component
+@Slf4j
+public class UploadPipeline {
+
+    private final Executor executor;
+    private final long retryAfterSeconds;
+
+    public UploadPipeline(@Qualifier(ExecutorConfig.UPLOAD_REQUEST_EXECUTOR) Executor uploadRequestExecutor,
+                          @Value("${app.upload.retry-after-seconds:5}") long retryAfterSeconds) {
+        this.executor = new DelegatingSecurityContextExecutor(uploadRequestExecutor);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> upload) {
+        try {
+            return CompletableFuture.supplyAsync(upload, executor);
+        } catch (RejectedExecutionException e) {
+            log.warn("Upload pipeline is saturated, rejecting request");
+            throw new UploadCapacityExceededException(retryAfterSeconds);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package org.closeness.decoder.service.upload;
+
+/**
+ * An object written by {@link MultipartUploadEngine}.
+ *
+ * @param key    storage key the object lives under
+ * @param size   body length in bytes
+ * @param digest hex SHA-256 of the body
+ * @param reused true if an existing object was reused and nothing was uploaded
+ */
+public record UploadedObject(String key, long size, String digest, boolean reused) {
+}
@@ -2,4 +2,6 @@ package org.closeness.decoder.utils;
 
 public class CONSTANTS {
 
+    // lifetime of a friend link; the DB row, Redis entry and upload event all derive from it
+    public static final int FRIEND_URL_EXPIRY_MINUTES = 60;
 }
@@ -0,0 +1,19 @@
+-- Reference-counted, content-addressed objects behind friend urls.
+-- Friend urls created before this table existed have no row here and own their object outright.
+CREATE TABLE IF NOT EXISTS closeness_decoder_schema.file_blobs (
+    digest      CHAR(64)  PRIMARY KEY,
+    storage_key TEXT      NOT NULL UNIQUE,
+    size_bytes  BIGINT    NOT NULL,
+    ref_count   INTEGER   NOT NULL,
+    created_at  TIMESTAMP NOT NULL DEFAULT now()
+);
+
+-- Objects no blob row points at any more but which may still be stored: a released blob whose
+-- digest was registered again before its object was deleted, a duplicate upload whose delete
+-- failed, or a presigned upload that may never be finalized. Purged together with released blobs
+-- once purge_after has passed; a finalized presigned upload removes its row first.
+CREATE TABLE IF NOT EXISTS closeness_decoder_schema.orphaned_objects (
+    storage_key TEXT      PRIMARY KEY,
+    created_at  TIMESTAMP NOT NULL DEFAULT now(),
+    purge_after TIMESTAMP NOT NULL DEFAULT now()
+);
@@ -0,0 +1,36 @@
+-- Converts friend_urls into a table range-partitioned by created_at, one partition per day.
+-- The existing table is attached as the partition for everything up to the end of today, so
+-- no rows are copied. FriendUrlPartitionMaintenance creates upcoming daily partitions and
+-- retires (detaches or drops) partitions past retention once none of their rows are active,
+-- the legacy partition included.
+-- There is deliberately no DEFAULT partition: it would rule out DETACH ... CONCURRENTLY.
+-- created_at is written in the application's local time, so day bounds are local days.
+BEGIN;
+
+ALTER TABLE closeness_decoder_schema.friend_urls RENAME TO friend_urls_legacy;
+
+CREATE TABLE closeness_decoder_schema.friend_urls (
+    LIKE closeness_decoder_schema.friend_urls_legacy INCLUDING DEFAULTS INCLUDING CONSTRAINTS,
+    PRIMARY KEY (friend_url_id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- lets the expiry sweeper find overdue rows without scanning expired history
+CREATE INDEX IF NOT EXISTS friend_urls_active_expires_at_idx
+    ON closeness_decoder_schema.friend_urls (expires_at) WHERE is_active;
+
+DO $$
+DECLARE
+    -- the legacy table keeps everything up to the end of today, including rows
+    -- inserted today before the cutover; daily partitions start tomorrow
+    cutover DATE := current_date + 1;
+BEGIN
+    EXECUTE format('ALTER TABLE closeness_decoder_schema.friend_urls ATTACH PARTITION '
+                   'closeness_decoder_schema.friend_urls_legacy FOR VALUES FROM (MINVALUE) TO (%L)', cutover);
+    FOR day_offset IN 0..2 LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS closeness_decoder_schema.friend_urls_p%s '
+                       'PARTITION OF closeness_decoder_schema.friend_urls FOR VALUES FROM (%L) TO (%L)',
+                       to_char(cutover + day_offset, 'YYYYMMDD'), cutover + day_offset, cutover + day_offset + 1);
+    END LOOP;
+END $$;
+
+COMMIT;
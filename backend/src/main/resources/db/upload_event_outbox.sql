@@ -0,0 +1,10 @@
+-- Upload events written in the same transaction as their friend_urls row and
+-- relayed to Kafka by UploadEventOutboxRelay; rows are deleted once acknowledged.
+CREATE TABLE IF NOT EXISTS closeness_decoder_schema.upload_event_outbox (
+    id          BIGSERIAL PRIMARY KEY,
+    friend_code UUID      NOT NULL,
+    storage_key TEXT      NOT NULL,
+    created_at  BIGINT    NOT NULL,
+    expires_at  BIGINT    NOT NULL,
+    enqueued_at TIMESTAMP NOT NULL DEFAULT now()
+);
@@ -0,0 +1,28 @@
+-- Generic cell rate algorithm: one key holding the theoretical arrival time.
+-- KEYS[1] = tat key, ARGV[1] = limit, ARGV[2] = window in ms, ARGV[3] = requests wanted
+-- grants as many of the wanted requests as the limit allows
+-- returns {granted, remaining, reset ms, retry after ms}
+local limit = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+local wanted = tonumber(ARGV[3])
+local interval = window / limit
+
+-- server time, so instances with skewed clocks share one timeline
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local tat = tonumber(redis.call('GET', KEYS[1])) or now
+if tat < now then
+    tat = now
+end
+
+-- the epsilon keeps float error from costing a whole request
+local available = math.floor((window - (tat - now)) / interval + 1e-9)
+local granted = math.min(wanted, available)
+if granted <= 0 then
+    return {0, 0, math.ceil(tat - now), math.ceil(tat + interval - window - now)}
+end
+
+local newTat = tat + granted * interval
+redis.call('SET', KEYS[1], newTat, 'PX', math.ceil(newTat - now))
+return {granted, math.floor((window - (newTat - now)) / interval + 1e-9), math.ceil(newTat - now), 0}
@@ -0,0 +1,31 @@
+-- Sliding window log: one sorted set member per accepted request.
+-- KEYS[1] = log key, ARGV[1] = limit, ARGV[2] = window in ms, ARGV[3] = unique member prefix,
+-- ARGV[4] = requests wanted
+-- grants as many of the wanted requests as the limit allows
+-- returns {granted, remaining, reset ms, retry after ms}
+local limit = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+local wanted = tonumber(ARGV[4])
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now - window)
+local count = redis.call('ZCARD', KEYS[1])
+local granted = math.min(wanted, limit - count)
+if granted > 0 then
+    for i = 1, granted do
+        redis.call('ZADD', KEYS[1], now, ARGV[3] .. ':' .. i)
+    end
+    redis.call('PEXPIRE', KEYS[1], window)
+    count = count + granted
+end
+
+-- the window frees its next slot when the oldest entry ages out
+local oldest = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES')
+local reset = tonumber(oldest[2]) + window - now
+
+if granted > 0 then
+    return {granted, limit - count, reset, 0}
+end
+return {0, 0, reset, reset}
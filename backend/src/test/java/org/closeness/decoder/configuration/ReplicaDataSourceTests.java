@@ -0,0 +1,98 @@
+package org.closeness.decoder.configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReplicaDataSourceTests {
+
+	private final DataSource primary = mock(DataSource.class);
+	private final Connection primaryConnection = mock(Connection.class);
+	private final HikariDataSource replica = mock(HikariDataSource.class);
+	private final Connection replicaConnection = mock(Connection.class);
+	private final ReplicaDataSource dataSource =
+			new ReplicaDataSource(primary, List.of(replica), Duration.ofSeconds(5));
+
+	@Test
+	void replicasJoinOnlyAfterAPassingCheck() throws Exception {
+		when(primary.getConnection()).thenReturn(primaryConnection);
+		reportLag(0);
+
+		assertSame(primaryConnection, dataSource.getConnection());
+		dataSource.checkReplicas();
+		assertSame(replicaConnection, dataSource.getConnection());
+	}
+
+	@Test
+	void laggingReplicasAreSkipped() throws Exception {
+		when(primary.getConnection()).thenReturn(primaryConnection);
+		reportLag(10_000);
+
+		dataSource.checkReplicas();
+
+		assertSame(primaryConnection, dataSource.getConnection());
+	}
+
+	@Test
+	void disconnectedReplicasAreSkipped() throws Exception {
+		when(primary.getConnection()).thenReturn(primaryConnection);
+		reportLag(0);
+		dataSource.checkReplicas();
+		// the lag query reports a replica whose WAL receiver is not streaming as -1
+		reportLag(-1);
+
+		dataSource.checkReplicas();
+
+		assertSame(primaryConnection, dataSource.getConnection());
+	}
+
+	@Test
+	void aFailedReplicaIsSkippedUntilTheNextCheck() throws Exception {
+		when(primary.getConnection()).thenReturn(primaryConnection);
+		reportLag(0);
+		dataSource.checkReplicas();
+		doThrow(new SQLException("connection refused")).when(replica).getConnection();
+
+		assertSame(primaryConnection, dataSource.getConnection());
+		assertSame(primaryConnection, dataSource.getConnection());
+		assertSame(primaryConnection, dataSource.getConnection());
+
+		// one attempt from the check and one from the first read, none after
+		verify(replica, times(2)).getConnection();
+	}
+
+	@Test
+	void noReplicasMeansPrimaryOnly() throws Exception {
+		ReplicaDataSource primaryOnly = new ReplicaDataSource(primary, List.of(), Duration.ofSeconds(5));
+		when(primary.getConnection()).thenReturn(primaryConnection);
+
+		assertSame(primaryConnection, primaryOnly.getConnection());
+		verify(replica, never()).getConnection();
+	}
+
+	private void reportLag(long lagMs) throws SQLException {
+		Statement statement = mock(Statement.class);
+		ResultSet resultSet = mock(ResultSet.class);
+		when(replica.getConnection()).thenReturn(replicaConnection);
+		when(replicaConnection.createStatement()).thenReturn(statement);
+		when(statement.executeQuery(anyString())).thenReturn(resultSet);
+		when(resultSet.next()).thenReturn(true);
+		when(resultSet.getLong(1)).thenReturn(lagMs);
+	}
+}
@@ -0,0 +1,111 @@
+package org.closeness.decoder.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Compares sign-up and sign-in database work before (exists, exists, insert;
+ * find, find, update) and after the single-statement upserts, against a real
+ * Postgres with the application schema. Rows created here use a
+ * "bench-" google id prefix and are deleted afterwards. Run with
+ * -Dbenchmark.db-url=jdbc:postgresql://... -Dbenchmark.db-user=... -Dbenchmark.db-password=...
+ */
+@EnabledIfSystemProperty(named = "benchmark.db-url", matches = ".+")
+class UserRepositoryAuthThroughputTests {
+
+	private static final int USERS = 2_000;
+	private static final int THREADS = 8;
+
+	private final HikariDataSource dataSource = dataSource();
+	private final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+	private final UserRepositoryCustomImpl repository = new UserRepositoryCustomImpl(jdbcTemplate);
+	private final String run = UUID.randomUUID().toString().substring(0, 8);
+
+	@AfterEach
+	void cleanUp() {
+		jdbcTemplate.update("DELETE FROM closeness_decoder_schema.users WHERE google_id LIKE 'bench-%'");
+		dataSource.close();
+	}
+
+	@Test
+	void compareAuthThroughput() throws Exception {
+		long legacySignUp = time(i -> legacySignUp("legacy-" + i));
+		long legacySignIn = time(i -> legacySignIn("legacy-" + i));
+		long upsertSignUp = time(i -> repository.insertIfAbsent(googleId("upsert-" + i), email("upsert-" + i),
+				"name", "picture"));
+		long upsertSignIn = time(i -> repository.refreshOnSignIn(googleId("upsert-" + i), email("upsert-" + i),
+				"name " + i, "picture"));
+
+		System.out.printf("sign-up legacy: %,d/s, upsert: %,d/s%n", perSecond(legacySignUp), perSecond(upsertSignUp));
+		System.out.printf("sign-in legacy: %,d/s, upsert: %,d/s%n", perSecond(legacySignIn), perSecond(upsertSignIn));
+	}
+
+	private void legacySignUp(String suffix) {
+		Integer byGoogleId = jdbcTemplate.queryForObject(
+				"SELECT count(*) FROM closeness_decoder_schema.users WHERE google_id = ?", Integer.class,
+				googleId(suffix));
+		Integer byEmail = jdbcTemplate.queryForObject(
+				"SELECT count(*) FROM closeness_decoder_schema.users WHERE email = ?", Integer.class, email(suffix));
+		if (byGoogleId == 0 && byEmail == 0) {
+			Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+			jdbcTemplate.update("INSERT INTO closeness_decoder_schema.users " +
+							"(id, email, user_name, google_id, profile_picture, created_at, updated_at) " +
+							"VALUES (?, ?, ?, ?, ?, ?, ?)",
+					UUID.randomUUID(), email(suffix), "name", googleId(suffix), "picture", now, now);
+		}
+	}
+
+	private void legacySignIn(String suffix) {
+		UUID id = jdbcTemplate.queryForList(
+				"SELECT id FROM closeness_decoder_schema.users WHERE google_id = ?", UUID.class, googleId(suffix))
+				.stream().findFirst()
+				.orElseGet(() -> jdbcTemplate.queryForObject(
+						"SELECT id FROM closeness_decoder_schema.users WHERE email = ?", UUID.class, email(suffix)));
+		jdbcTemplate.update("UPDATE closeness_decoder_schema.users SET user_name = ?, updated_at = ? WHERE id = ?",
+				"name " + suffix, Timestamp.valueOf(LocalDateTime.now()), id);
+	}
+
+	private static HikariDataSource dataSource() {
+		HikariDataSource dataSource = new HikariDataSource();
+		dataSource.setJdbcUrl(System.getProperty("benchmark.db-url"));
+		dataSource.setUsername(System.getProperty("benchmark.db-user", "postgres"));
+		dataSource.setPassword(System.getProperty("benchmark.db-password", ""));
+		dataSource.setMaximumPoolSize(THREADS);
+		return dataSource;
+	}
+
+	private long time(IntConsumer call) throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		long start = System.nanoTime();
+		for (int i = 0; i < USERS; i++) {
+			int user = i;
+			executor.execute(() -> call.accept(user));
+		}
+		executor.shutdown();
+		executor.awaitTermination(10, TimeUnit.MINUTES);
+		return System.nanoTime() - start;
+	}
+
+	private String googleId(String suffix) {
+		return "bench-" + run + "-" + suffix;
+	}
+
+	private String email(String suffix) {
+		return "bench-" + run + "-" + suffix + "@example.com";
+	}
+
+	private long perSecond(long nanos) {
+		return USERS * 1_000_000_000L / nanos;
+	}
+}
@@ -0,0 +1,70 @@
+package org.closeness.decoder.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.security.KeyPair;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class GoogleIdTokenValidatorTests {
+
+	private static final String CLIENT_ID = "client-id";
+
+	private final KeyPair keyPair = Jwts.SIG.RS256.keyPair().build();
+	private final AtomicInteger fetches = new AtomicInteger();
+	private final GoogleSigningKeySource keySource = () -> {
+		fetches.incrementAndGet();
+		return new GoogleSigningKeys(Map.of("kid-1", keyPair.getPublic()), Duration.ofHours(1));
+	};
+	private final GoogleIdTokenValidator validator = new GoogleIdTokenValidator(keySource,
+			mock(TaskScheduler.class), CLIENT_ID, 0.8, Duration.ofMinutes(1), Duration.ofSeconds(30));
+
+	@Test
+	void verifiesTokensWithLocalKeys() {
+		Claims claims = validator.verify(token("kid-1", "https://accounts.google.com", CLIENT_ID));
+		validator.verify(token("kid-1", "accounts.google.com", CLIENT_ID));
+
+		assertEquals("google-user", claims.getSubject());
+		assertEquals("user@example.com", claims.get("email", String.class));
+		assertEquals(1, fetches.get());
+	}
+
+	@Test
+	void rejectsOtherAudiencesAndIssuers() {
+		assertThrows(JwtException.class,
+				() -> validator.verify(token("kid-1", "https://accounts.google.com", "other-client")));
+		assertThrows(JwtException.class,
+				() -> validator.verify(token("kid-1", "https://evil.example.com", CLIENT_ID)));
+	}
+
+	@Test
+	void rejectsUnknownKeys() {
+		assertThrows(JwtException.class,
+				() -> validator.verify(token("kid-2", "https://accounts.google.com", CLIENT_ID)));
+	}
+
+	private String token(String keyId, String issuer, String audience) {
+		Instant now = Instant.now();
+		return Jwts.builder()
+				.header().keyId(keyId).and()
+				.subject("google-user")
+				.issuer(issuer)
+				.audience().add(audience).and()
+				.claim("email", "user@example.com")
+				.issuedAt(Date.from(now))
+				.expiration(Date.from(now.plus(Duration.ofHours(1))))
+				.signWith(keyPair.getPrivate())
+				.compact();
+	}
+}
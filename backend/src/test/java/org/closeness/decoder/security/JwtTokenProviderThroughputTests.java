@@ -0,0 +1,107 @@
+package org.closeness.decoder.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.io.Encoders;
+import io.jsonwebtoken.security.Keys;
+import org.closeness.decoder.model.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Compares the per-request token work of the filter before (key and parser
+ * built for every parse, token parsed twice) with a single parse on a shared
+ * parser, and with the verified-token cache. Run with -Dbenchmark=true.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class JwtTokenProviderThroughputTests {
+
+	private static final int WARMUP = 50_000;
+	private static final int ITERATIONS = 500_000;
+
+	private final String secret = secret();
+	private final JwtParser parser =
+			Jwts.parser().verifyWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret))).build();
+	private final JwtTokenProvider cached = new JwtTokenProvider(secret, Duration.ofHours(1).toMillis(),
+			10_000, Duration.ofMinutes(5));
+	private final String token = cached.generateToken(user());
+
+	@Test
+	void compareFilterOverhead() {
+		runLegacy(WARMUP);
+		runSingleParse(WARMUP);
+		runCached(WARMUP);
+
+		long legacyNanos = runLegacy(ITERATIONS);
+		long singleParseNanos = runSingleParse(ITERATIONS);
+		long cachedNanos = runCached(ITERATIONS);
+
+		System.out.printf("legacy:       %,d ns/request%n", legacyNanos / ITERATIONS);
+		System.out.printf("single parse: %,d ns/request%n", singleParseNanos / ITERATIONS);
+		System.out.printf("cached:       %,d ns/request%n", cachedNanos / ITERATIONS);
+	}
+
+	private long runLegacy(int iterations) {
+		long sink = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			Jwts.parser().verifyWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret))).build()
+					.parseSignedClaims(token);
+			sink += Jwts.parser().verifyWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret))).build()
+					.parseSignedClaims(token).getPayload().getSubject().length();
+		}
+		long elapsed = System.nanoTime() - start;
+		if (sink == 42) {
+			System.out.println();
+		}
+		return elapsed;
+	}
+
+	// what a cache miss costs: one parse on the shared parser
+	private long runSingleParse(int iterations) {
+		long sink = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			sink += parser.parseSignedClaims(token).getPayload().getSubject().length();
+		}
+		long elapsed = System.nanoTime() - start;
+		if (sink == 42) {
+			System.out.println();
+		}
+		return elapsed;
+	}
+
+	private long runCached(int iterations) {
+		long sink = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			Claims claims = cached.verify(token);
+			sink += claims.getSubject().length();
+		}
+		long elapsed = System.nanoTime() - start;
+		if (sink == 42) {
+			System.out.println();
+		}
+		return elapsed;
+	}
+
+	private static String secret() {
+		byte[] key = new byte[32];
+		new SecureRandom().nextBytes(key);
+		return Encoders.BASE64.encode(key);
+	}
+
+	private static User user() {
+		User user = new User();
+		user.setId(UUID.randomUUID());
+		user.setEmail("user@example.com");
+		user.setUserName("user");
+		return user;
+	}
+}
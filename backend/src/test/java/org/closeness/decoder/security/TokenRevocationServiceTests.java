@@ -0,0 +1,74 @@
+package org.closeness.decoder.security;
+
+import org.closeness.decoder.service.RedisCacheService;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TokenRevocationServiceTests {
+
+	private final RedisCacheService redisCacheService = mock(RedisCacheService.class);
+	private final TokenRevocationService service = new TokenRevocationService(redisCacheService, 1000, 0.001);
+
+	@Test
+	void unrevokedTokensAreAnsweredLocally() {
+		for (int i = 0; i < 1000; i++) {
+			service.isRevoked(UUID.randomUUID().toString());
+		}
+		assertFalse(service.isRevoked(null));
+
+		// nothing is revoked, so no lookup should reach Redis
+		verify(redisCacheService, never()).isTokenRevoked(anyString());
+	}
+
+	@Test
+	void revokedTokensAreConfirmedInRedis() {
+		String tokenId = UUID.randomUUID().toString();
+		when(redisCacheService.isTokenRevoked(tokenId)).thenReturn(true);
+
+		service.revoke(tokenId, new Date(System.currentTimeMillis() + 60_000));
+
+		assertTrue(service.isRevoked(tokenId));
+		verify(redisCacheService).revokeToken(eq(tokenId), any(Duration.class));
+	}
+
+	@Test
+	void rebuildLoadsRevocationsFromOtherInstances() {
+		String tokenId = UUID.randomUUID().toString();
+		when(redisCacheService.revokedTokenIds()).thenReturn(List.of(tokenId));
+		when(redisCacheService.isTokenRevoked(tokenId)).thenReturn(true);
+
+		service.rebuild();
+
+		assertTrue(service.isRevoked(tokenId));
+	}
+
+	@Test
+	void falsePositiveRateStaysNearTarget() {
+		BloomFilter filter = new BloomFilter(10_000, 0.01);
+		for (int i = 0; i < 10_000; i++) {
+			filter.add("revoked-" + i);
+		}
+		int falsePositives = 0;
+		for (int i = 0; i < 100_000; i++) {
+			assertTrue(filter.mightContain("revoked-" + (i % 10_000)));
+			if (filter.mightContain("live-" + i)) {
+				falsePositives++;
+			}
+		}
+		assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+	}
+}
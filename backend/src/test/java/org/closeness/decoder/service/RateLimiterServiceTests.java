@@ -0,0 +1,102 @@
+package org.closeness.decoder.service;
+
+import org.closeness.decoder.annotation.RateLimitAlgorithm;
+import org.closeness.decoder.dto.RateLimitDecision;
+import org.closeness.decoder.dto.RateLimitLease;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RateLimiterServiceTests {
+
+	private final RedisCacheService redisCacheService = mock(RedisCacheService.class);
+	private final RateLimiterService rateLimiterService = new RateLimiterService(redisCacheService,
+			0.1, 50, Duration.ofMinutes(1), 1000, Duration.ofMinutes(1));
+
+	@Test
+	void leasesGrowWhileTheyAreUsedUp() {
+		RemoteQuota remote = new RemoteQuota(100);
+		when(redisCacheService.leaseRateLimit(eq("k"), eq(RateLimitAlgorithm.GCRA), eq(100), anyLong(), anyInt()))
+				.thenAnswer(invocation -> remote.lease(invocation.getArgument(4)));
+
+		for (int i = 0; i < 25; i++) {
+			RateLimitDecision decision = rateLimiterService.acquire("k", RateLimitAlgorithm.GCRA, 100, 60);
+			assertTrue(decision.allowed());
+			assertEquals(99 - i, decision.remaining());
+		}
+
+		// leases of 1, 2, 4, 8 and then the cap of 10
+		verify(redisCacheService, times(5))
+				.leaseRateLimit(eq("k"), eq(RateLimitAlgorithm.GCRA), eq(100), anyLong(), anyInt());
+		verify(redisCacheService)
+				.leaseRateLimit(eq("k"), eq(RateLimitAlgorithm.GCRA), eq(100), anyLong(), eq(10));
+	}
+
+	@Test
+	void sparseCallersGetTheFullLimit() {
+		// a zero lease ttl makes every call find its lease stale, as a client
+		// calling less often than the ttl does
+		RateLimiterService sparse = new RateLimiterService(redisCacheService,
+				0.1, 50, Duration.ZERO, 1000, Duration.ofMinutes(1));
+		RemoteQuota remote = new RemoteQuota(100);
+		when(redisCacheService.leaseRateLimit(eq("k"), eq(RateLimitAlgorithm.GCRA), eq(100), anyLong(), anyInt()))
+				.thenAnswer(invocation -> remote.lease(invocation.getArgument(4)));
+
+		for (int i = 0; i < 100; i++) {
+			assertTrue(sparse.acquire("k", RateLimitAlgorithm.GCRA, 100, 60).allowed(), "request " + i);
+		}
+		assertEquals(0, remote.remaining);
+	}
+
+	@Test
+	void denialsAreRememberedUntilRetry() {
+		when(redisCacheService.leaseRateLimit(eq("k"), eq(RateLimitAlgorithm.GCRA), eq(100), anyLong(), anyInt()))
+				.thenReturn(new RateLimitLease(0, 0, 60000, 30000));
+
+		RateLimitDecision first = rateLimiterService.acquire("k", RateLimitAlgorithm.GCRA, 100, 60);
+		RateLimitDecision second = rateLimiterService.acquire("k", RateLimitAlgorithm.GCRA, 100, 60);
+
+		assertFalse(first.allowed());
+		assertFalse(second.allowed());
+		assertTrue(second.retryAfterMs() > 0);
+		verify(redisCacheService, times(1))
+				.leaseRateLimit(eq("k"), eq(RateLimitAlgorithm.GCRA), eq(100), anyLong(), anyInt());
+	}
+
+	@Test
+	void smallLimitsLeaseOneRequestAtATime() {
+		when(redisCacheService.leaseRateLimit(eq("k"), eq(RateLimitAlgorithm.SLIDING_WINDOW), eq(5), anyLong(), eq(1)))
+				.thenReturn(new RateLimitLease(1, 4, 60000, 0));
+
+		assertTrue(rateLimiterService.acquire("k", RateLimitAlgorithm.SLIDING_WINDOW, 5, 60).allowed());
+	}
+
+	// debits leased requests the way the scripts do
+	private static final class RemoteQuota {
+
+		private long remaining;
+
+		RemoteQuota(long limit) {
+			this.remaining = limit;
+		}
+
+		RateLimitLease lease(int wanted) {
+			long granted = Math.min(wanted, remaining);
+			remaining -= granted;
+			return granted > 0
+					? new RateLimitLease(granted, remaining, 60000, 0)
+					: new RateLimitLease(0, 0, 60000, 60000);
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package org.closeness.decoder.service.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SingleFlightTests {
+
+	private static final int CALLERS = 8;
+
+	private final SingleFlight<String, String> singleFlight = new SingleFlight<>(Duration.ofSeconds(5));
+	private final ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+	private final CountDownLatch entered = new CountDownLatch(CALLERS);
+	private final AtomicInteger loads = new AtomicInteger();
+
+	@AfterEach
+	void tearDown() {
+		callers.shutdownNow();
+	}
+
+	@Test
+	void concurrentMissesShareOneLoad() throws Exception {
+		List<Future<Object>> results = missTogether(() -> {
+			loads.incrementAndGet();
+			holdUntilEveryoneHasMissed();
+			return "value";
+		});
+
+		for (Future<Object> result : results) {
+			assertEquals("value", result.get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	void aFailedLoadReachesEveryWaiter() throws Exception {
+		IllegalStateException failure = new IllegalStateException("database down");
+		List<Future<Object>> results = missTogether(() -> {
+			loads.incrementAndGet();
+			holdUntilEveryoneHasMissed();
+			throw failure;
+		});
+
+		for (Future<Object> result : results) {
+			assertSame(failure, result.get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(1, loads.get());
+	}
+
+	// every caller returns either the loaded value or the exception it saw
+	private List<Future<Object>> missTogether(Supplier<String> loader) {
+		List<Future<Object>> results = new ArrayList<>();
+		for (int i = 0; i < CALLERS; i++) {
+			results.add(callers.submit(() -> {
+				entered.countDown();
+				try {
+					return singleFlight.load("key", loader);
+				} catch (RuntimeException e) {
+					return e;
+				}
+			}));
+		}
+		return results;
+	}
+
+	// the last caller to arrive may still be between entering and joining the flight
+	private void holdUntilEveryoneHasMissed() {
+		try {
+			entered.await();
+			Thread.sleep(200);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
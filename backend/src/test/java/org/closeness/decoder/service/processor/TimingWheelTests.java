@@ -0,0 +1,70 @@
+package org.closeness.decoder.service.processor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTests {
+
+	private static final long TICK_MS = 1000;
+
+	@Test
+	void firesPastDeadlinesOnNextAdvance() {
+		TimingWheel<String> wheel = new TimingWheel<>(TICK_MS, 10_000);
+		wheel.schedule(5_000, "late");
+
+		assertEquals(List.of("late"), wheel.advance(10_000));
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	void firesWithinTwoTicksOfDeadlineAcrossLevels() {
+		long start = 1_700_000_123_456L;
+		TimingWheel<Long> wheel = new TimingWheel<>(TICK_MS, start);
+		Random random = new Random(42);
+		List<Long> deadlines = new ArrayList<>();
+		for (int i = 0; i < 5_000; i++) {
+			// up to ~2 hours, well past the first two levels
+			long deadline = start + (long) (random.nextDouble() * 7_200_000);
+			deadlines.add(deadline);
+			wheel.schedule(deadline, deadline);
+		}
+
+		int fired = 0;
+		for (long now = start; now <= start + 7_201_000; now += TICK_MS) {
+			for (long deadline : wheel.advance(now)) {
+				assertTrue(deadline <= now, "fired early");
+				// deadlines round up to a tick, and the advance lands anywhere in that tick
+				assertTrue(now - deadline < 2 * TICK_MS, "fired late");
+				fired++;
+			}
+		}
+		assertEquals(deadlines.size(), fired);
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	void catchesUpAfterAPause() {
+		TimingWheel<String> wheel = new TimingWheel<>(TICK_MS, 0);
+		wheel.schedule(30_000, "a");
+		wheel.schedule(5_000_000, "b");
+
+		assertEquals(List.of("a"), wheel.advance(600_000));
+		assertEquals(List.of("b"), wheel.advance(6_000_000));
+	}
+
+	@Test
+	void holdsDeadlinesBeyondTheTopLevel() {
+		TimingWheel<String> wheel = new TimingWheel<>(TICK_MS, 0);
+		long span = TICK_MS << 24;
+		wheel.schedule(span + 1_500, "far");
+
+		assertTrue(wheel.advance(span).isEmpty());
+		assertEquals(List.of("far"), wheel.advance(span + 2_000));
+	}
+}
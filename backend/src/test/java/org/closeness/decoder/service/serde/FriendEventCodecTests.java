@@ -0,0 +1,64 @@
+package org.closeness.decoder.service.serde;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.closeness.decoder.dto.FriendClickEvent;
+import org.closeness.decoder.dto.FriendUploadEvent;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FriendEventCodecTests {
+
+	private static final String FRIEND_CODE = UUID.randomUUID().toString();
+
+	@Test
+	void clickEventRoundTrips() {
+		FriendClickEvent event = new FriendClickEvent(FRIEND_CODE, 42, 1_000L, 2_000L);
+
+		assertEquals(event, FriendEventCodec.decodeClickEvent(FriendEventCodec.encode(event)));
+	}
+
+	@Test
+	void uploadEventRoundTrips() {
+		FriendUploadEvent event = new FriendUploadEvent(
+				FRIEND_CODE, "2026-01-01/" + UUID.randomUUID() + ".pdf", 1_000L, 3_601_000L);
+
+		assertEquals(event, FriendEventCodec.decodeUploadEvent(FriendEventCodec.encode(event)));
+	}
+
+	@Test
+	void decodesLegacyJsonRecords() {
+		String clickJson = "{\"friendCode\":\"" + FRIEND_CODE + "\",\"clickedAt\":1000}";
+		String uploadJson = "{\"friendCode\":\"" + FRIEND_CODE + "\",\"s3FileKey\":\"a/b.pdf\","
+				+ "\"createdAt\":1000,\"expiredAt\":2000}";
+
+		FriendClickEvent click = FriendEventCodec.decodeClickEvent(clickJson.getBytes(StandardCharsets.UTF_8));
+		FriendUploadEvent upload = FriendEventCodec.decodeUploadEvent(uploadJson.getBytes(StandardCharsets.UTF_8));
+
+		assertEquals(FRIEND_CODE, click.getFriendCode());
+		assertEquals(1, click.clicks());
+		assertEquals(new FriendUploadEvent(FRIEND_CODE, "a/b.pdf", 1000L, 2000L), upload);
+	}
+
+	@Test
+	void ignoresFieldsAppendedByLaterVersions() {
+		FriendClickEvent event = new FriendClickEvent(FRIEND_CODE, 7, 1_000L, 2_000L);
+		byte[] encoded = FriendEventCodec.encode(event);
+		byte[] newer = Arrays.copyOf(encoded, encoded.length + 8);
+		newer[1] = 2;
+
+		assertEquals(event, FriendEventCodec.decodeClickEvent(newer));
+	}
+
+	@Test
+	void rejectsRecordsOfTheWrongType() {
+		byte[] click = FriendEventCodec.encode(new FriendClickEvent(FRIEND_CODE, 1, 0L, 0L));
+
+		assertThrows(SerializationException.class, () -> FriendEventCodec.decodeUploadEvent(click));
+	}
+}
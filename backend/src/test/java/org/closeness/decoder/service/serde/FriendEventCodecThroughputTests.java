@@ -0,0 +1,70 @@
+package org.closeness.decoder.service.serde;
+
+import org.closeness.decoder.dto.FriendClickEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Compares the binary codec with the previous JSON path (Jackson encode, String
+ * decode, then Jackson decode of the String). Run with -Dbenchmark=true.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class FriendEventCodecThroughputTests {
+
+	private static final int WARMUP = 200_000;
+	private static final int ITERATIONS = 2_000_000;
+
+	private final JsonMapper json = JsonMapper.builder().build();
+	private final FriendClickEvent event =
+			new FriendClickEvent(UUID.randomUUID().toString(), 12, 1_000L, 2_000L);
+
+	@Test
+	void compareClickEventThroughput() {
+		runJson(WARMUP);
+		runBinary(WARMUP);
+
+		long jsonNanos = runJson(ITERATIONS);
+		long binaryNanos = runBinary(ITERATIONS);
+
+		System.out.printf("json:   %,d records/s, %d bytes/record%n",
+				perSecond(jsonNanos), json.writeValueAsBytes(event).length);
+		System.out.printf("binary: %,d records/s, %d bytes/record%n",
+				perSecond(binaryNanos), FriendEventCodec.encode(event).length);
+	}
+
+	private long runJson(int iterations) {
+		long sink = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			byte[] bytes = json.writeValueAsBytes(event);
+			String value = new String(bytes, StandardCharsets.UTF_8);
+			sink += json.readValue(value, FriendClickEvent.class).getCount();
+		}
+		long elapsed = System.nanoTime() - start;
+		if (sink == 42) {
+			System.out.println();
+		}
+		return elapsed;
+	}
+
+	private long runBinary(int iterations) {
+		long sink = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			sink += FriendEventCodec.decodeClickEvent(FriendEventCodec.encode(event)).getCount();
+		}
+		long elapsed = System.nanoTime() - start;
+		if (sink == 42) {
+			System.out.println();
+		}
+		return elapsed;
+	}
+
+	private long perSecond(long nanos) {
+		return ITERATIONS * 1_000_000_000L / nanos;
+	}
+}
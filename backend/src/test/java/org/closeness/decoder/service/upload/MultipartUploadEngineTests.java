@@ -0,0 +1,204 @@
+package org.closeness.decoder.service.upload;
+
+import org.closeness.decoder.configuration.S3Properties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MultipartUploadEngineTests {
+
+	private static final int PART_SIZE = (int) DataSize.ofMegabytes(5).toBytes();
+
+	private final S3AsyncClient s3Client = mock(S3AsyncClient.class);
+	private final S3Properties s3Properties = mock(S3Properties.class);
+	private final AtomicInteger partNumbers = new AtomicInteger();
+
+	@BeforeEach
+	void setUp() {
+		when(s3Properties.getBucketName()).thenReturn("bucket");
+		when(s3Client.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+				.thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().build()));
+		when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+				.thenReturn(CompletableFuture.completedFuture(
+						CreateMultipartUploadResponse.builder().uploadId("upload-1").build()));
+		when(s3Client.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class)))
+				.thenAnswer(invocation -> CompletableFuture.completedFuture(UploadPartResponse.builder()
+						.eTag("etag-" + partNumbers.incrementAndGet()).build()));
+		when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+				.thenReturn(CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().build()));
+		when(s3Client.abortMultipartUpload(any(AbortMultipartUploadRequest.class)))
+				.thenReturn(CompletableFuture.completedFuture(AbortMultipartUploadResponse.builder().build()));
+	}
+
+	@Test
+	void smallBodiesUseASinglePut() throws Exception {
+		UploadedObject uploaded = engine(DataSize.ofGigabytes(1)).upload(body(1024), "a.pdf", "application/pdf");
+
+		assertEquals(1024, uploaded.size());
+		verify(s3Client).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+		verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+	}
+
+	@Test
+	void largeBodiesAreSplitIntoParts() throws Exception {
+		UploadedObject uploaded = engine(DataSize.ofGigabytes(1))
+				.upload(body(PART_SIZE * 2 + 10), "a.pdf", "application/pdf");
+
+		assertEquals(PART_SIZE * 2L + 10, uploaded.size());
+		verify(s3Client, times(3)).uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class));
+		verify(s3Client).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+	}
+
+	@Test
+	void digestIsTheSameOnBothPaths() throws Exception {
+		byte[] content = new byte[PART_SIZE + 10];
+		content[7] = 42;
+		MultipartUploadEngine engine = engine(DataSize.ofGigabytes(1));
+
+		String multipart = engine.upload(new ByteArrayInputStream(content), "a.pdf", "application/pdf").digest();
+		MultipartUploadEngine largeParts = new MultipartUploadEngine(s3Client, s3Properties,
+				DataSize.ofMegabytes(6), 2, DataSize.ofGigabytes(1), 100, 60000);
+		String single = largeParts.upload(new ByteArrayInputStream(content), "b.pdf", "application/pdf").digest();
+
+		assertEquals(multipart, single);
+	}
+
+	@Test
+	void smallDuplicatesAreNotUploaded() throws Exception {
+		UploadedObject uploaded = engine(DataSize.ofGigabytes(1))
+				.upload(body(1024), "a.pdf", "application/pdf", digest -> "existing.pdf");
+
+		assertEquals("existing.pdf", uploaded.key());
+		assertTrue(uploaded.reused());
+		verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+	}
+
+	@Test
+	void oversizedBodiesAreAborted() {
+		MultipartUploadEngine engine = engine(DataSize.ofMegabytes(6));
+
+		assertThrows(MaxUploadSizeExceededException.class,
+				() -> engine.upload(body(PART_SIZE * 2), "a.pdf", "application/pdf"));
+		verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+		verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+	}
+
+	@Test
+	void silentClientsHoldNoBuffer() throws Exception {
+		MultipartUploadEngine engine = singleBufferEngine();
+		CountDownLatch release = new CountDownLatch(1);
+		InputStream silent = new InputStream() {
+			@Override
+			public int read() throws IOException {
+				await(release);
+				return -1;
+			}
+		};
+		CompletableFuture<UploadedObject> stalled = CompletableFuture.supplyAsync(() -> upload(engine, silent));
+
+		try {
+			assertEquals(1024, engine.upload(body(1024), "b.pdf", "application/pdf").size());
+		} finally {
+			release.countDown();
+		}
+		stalled.join();
+	}
+
+	@Test
+	void tricklingClientsGiveUpTheirBuffer() throws Exception {
+		MultipartUploadEngine engine = singleBufferEngine();
+		CountDownLatch holding = new CountDownLatch(1);
+		InputStream trickle = new InputStream() {
+			@Override
+			public int read() {
+				return 1;
+			}
+
+			@Override
+			public int read(byte[] buffer, int offset, int length) {
+				holding.countDown();
+				sleep(20);
+				buffer[offset] = 1;
+				return 1;
+			}
+		};
+		CompletableFuture<UploadedObject> stalled = CompletableFuture.supplyAsync(() -> upload(engine, trickle));
+		holding.await();
+
+		assertEquals(1024, engine.upload(body(1024), "b.pdf", "application/pdf").size());
+		CompletionException failure = assertThrows(CompletionException.class, stalled::join);
+		assertTrue(failure.getCause() instanceof UncheckedIOException);
+	}
+
+	private MultipartUploadEngine engine(DataSize maxSize) {
+		// two buffers, so a leaked buffer would time out the next take
+		return new MultipartUploadEngine(s3Client, s3Properties,
+				DataSize.ofMegabytes(5), 2, maxSize, 100, 60000);
+	}
+
+	// one buffer held for at most 200 ms, and other uploads wait up to 5 s for it
+	private MultipartUploadEngine singleBufferEngine() {
+		return new MultipartUploadEngine(s3Client, s3Properties,
+				DataSize.ofMegabytes(5), 1, DataSize.ofGigabytes(1), 5000, 200);
+	}
+
+	private static UploadedObject upload(MultipartUploadEngine engine, InputStream in) {
+		try {
+			return engine.upload(in, "a.pdf", "application/pdf");
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void await(CountDownLatch latch) throws IOException {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private ByteArrayInputStream body(int size) {
+		return new ByteArrayInputStream(new byte[size]);
+	}
+}